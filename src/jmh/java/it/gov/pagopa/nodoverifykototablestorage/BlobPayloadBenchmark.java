@@ -0,0 +1,47 @@
+package it.gov.pagopa.nodoverifykototablestorage;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.azure.core.util.BinaryData;
+import it.gov.pagopa.nodoverifykototablestorage.util.TestUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the preparation of the payload uploaded on Blob Storage for an event body:
+ * the stream-wrapped payload whose length is computed from its String form, with the payload built on the encoded bytes.
+ * The payload is consumed as the HTTP pipeline does, so run with {@code -prof gc} to compare the allocation per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BlobPayloadBenchmark {
+
+    @Param({"1", "50"})
+    public int bodyMultiplier;
+
+    private String body;
+
+    @Setup
+    public void setup() throws Exception {
+        String event = TestUtil.readStringFromFile("benchmark/verify_ko_event.json");
+        body = event.repeat(bodyMultiplier);
+    }
+
+    @Benchmark
+    public void streamPayload(Blackhole blackhole) {
+        BinaryData payload = BinaryData.fromStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        blackhole.consume(payload.toString().length());
+        blackhole.consume(payload.toByteBuffer());
+    }
+
+    @Benchmark
+    public void bytesPayload(Blackhole blackhole) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        BinaryData payload = BinaryData.fromBytes(bytes);
+        blackhole.consume(bytes.length);
+        blackhole.consume(payload.toByteBuffer());
+    }
+}
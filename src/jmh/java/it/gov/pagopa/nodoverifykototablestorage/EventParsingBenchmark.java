@@ -0,0 +1,106 @@
+package it.gov.pagopa.nodoverifykototablestorage;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import it.gov.pagopa.nodoverifykototablestorage.util.Constants;
+import it.gov.pagopa.nodoverifykototablestorage.util.EventFieldExtractor;
+import it.gov.pagopa.nodoverifykototablestorage.util.ObjectMapperUtils;
+import it.gov.pagopa.nodoverifykototablestorage.util.TestUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the extraction of the indexed fields from an event by materializing the whole event in a Map
+ * with the extraction done in a single streaming pass by {@link EventFieldExtractor}.
+ * Run with {@code -prof gc} to compare also the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventParsingBenchmark {
+
+    private static final EventFieldExtractor EXTRACTOR = new EventFieldExtractor(
+            Constants.ID_EVENT_FIELD,
+            Constants.FAULTBEAN_TIMESTAMP_EVENT_FIELD,
+            Constants.NOTICE_NUMBER_EVENT_FIELD,
+            Constants.ID_PA_EVENT_FIELD,
+            Constants.ID_PSP_EVENT_FIELD,
+            Constants.ID_STATION_EVENT_FIELD,
+            Constants.ID_CHANNEL_EVENT_FIELD);
+
+    @Param({"events/event_ok_1.json"})
+    public String eventFile;
+
+    /**
+     * Number of additional nested objects added to the event, simulating the bigger verify KO payloads.
+     */
+    @Param({"0", "200"})
+    public int additionalObjects;
+
+    private String event;
+
+    @Setup
+    public void setup() throws Exception {
+        String baseEvent = TestUtil.readStringFromFile(eventFile).trim();
+        StringBuilder builder = new StringBuilder(baseEvent.substring(0, baseEvent.lastIndexOf('}')));
+        builder.append(",\"additionalInfo\":[");
+        for (int index = 0; index < additionalObjects; index++) {
+            builder.append(index == 0 ? "" : ",")
+                    .append("{\"key\":\"key-").append(index).append("\",\"value\":\"value of the additional information number ").append(index)
+                    .append("\",\"nested\":{\"amount\":").append(index).append(".50,\"enabled\":true}}");
+        }
+        event = builder.append("]}").toString();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Benchmark
+    public void mapBased(Blackhole blackhole) throws Exception {
+        Map<String, Object> parsedEvent = ObjectMapperUtils.readValue(event, Map.class);
+        Map<String, Object> faultBean = (Map) parsedEvent.getOrDefault(Constants.FAULTBEAN_EVENT_FIELD, Map.of());
+        blackhole.consume(faultBean.getOrDefault(Constants.TIMESTAMP_EVENT_FIELD, "ERROR"));
+        blackhole.consume(getEventField(parsedEvent, Constants.ID_EVENT_FIELD, String.class, Constants.NA));
+        blackhole.consume(getEventField(parsedEvent, Constants.NOTICE_NUMBER_EVENT_FIELD, String.class, Constants.NA));
+        blackhole.consume(getEventField(parsedEvent, Constants.ID_PA_EVENT_FIELD, String.class, Constants.NA));
+        blackhole.consume(getEventField(parsedEvent, Constants.ID_PSP_EVENT_FIELD, String.class, Constants.NA));
+        blackhole.consume(getEventField(parsedEvent, Constants.ID_STATION_EVENT_FIELD, String.class, Constants.NA));
+        blackhole.consume(getEventField(parsedEvent, Constants.ID_CHANNEL_EVENT_FIELD, String.class, Constants.NA));
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws Exception {
+        EventFieldExtractor.ExtractedFields fields = EXTRACTOR.extract(event);
+        blackhole.consume(fields.get(Constants.FAULTBEAN_TIMESTAMP_EVENT_FIELD));
+        blackhole.consume(fields.getField(Constants.ID_EVENT_FIELD, Constants.NA));
+        blackhole.consume(fields.getField(Constants.NOTICE_NUMBER_EVENT_FIELD, Constants.NA));
+        blackhole.consume(fields.getField(Constants.ID_PA_EVENT_FIELD, Constants.NA));
+        blackhole.consume(fields.getField(Constants.ID_PSP_EVENT_FIELD, Constants.NA));
+        blackhole.consume(fields.getField(Constants.ID_STATION_EVENT_FIELD, Constants.NA));
+        blackhole.consume(fields.getField(Constants.ID_CHANNEL_EVENT_FIELD, Constants.NA));
+    }
+
+    /**
+     * The Map-walking lookup used by the function before the streaming extractor, kept as the baseline of the comparison.
+     */
+    @SuppressWarnings({"rawtypes"})
+    private static <T> T getEventField(Map<String, Object> event, String name, Class<T> clazz, T defaultValue) {
+        T field = null;
+        List<String> splitPath = List.of(name.split("\\."));
+        Map eventSubset = event;
+        Iterator<String> it = splitPath.listIterator();
+        while (it.hasNext()) {
+            Object retrievedEventField = eventSubset.get(it.next());
+            if (!it.hasNext()) {
+                field = clazz.cast(retrievedEventField);
+            } else {
+                eventSubset = (Map) retrievedEventField;
+                if (eventSubset == null) {
+                    throw new IllegalArgumentException("The field [" + name + "] does not exists in the passed event.");
+                }
+            }
+        }
+        return field == null ? defaultValue : field;
+    }
+}
@@ -0,0 +1,175 @@
+package it.gov.pagopa.nodoverifykototablestorage;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.azure.data.tables.models.TableTransactionAction;
+import it.gov.pagopa.nodoverifykototablestorage.model.EventToPersist;
+import it.gov.pagopa.nodoverifykototablestorage.util.Constants;
+import it.gov.pagopa.nodoverifykototablestorage.util.EventFieldExtractor;
+import it.gov.pagopa.nodoverifykototablestorage.util.EventTrace;
+import it.gov.pagopa.nodoverifykototablestorage.util.FaultBeanTimestampCodec;
+import it.gov.pagopa.nodoverifykototablestorage.util.TestUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the per-event transformation executed by {@link NodoVerifyKOEventToTableStorage} before any storage I/O,
+ * both stage by stage and as a whole, on batches of realistic events and Event Hub properties.
+ * Every operation processes a whole batch, so the scores are per batch and not per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventPipelineBenchmark {
+
+    private static final EventFieldExtractor EXTRACTOR = new EventFieldExtractor(
+            Constants.ID_EVENT_FIELD,
+            Constants.FAULTBEAN_TIMESTAMP_EVENT_FIELD,
+            Constants.NOTICE_NUMBER_EVENT_FIELD,
+            Constants.ID_PA_EVENT_FIELD,
+            Constants.ID_PSP_EVENT_FIELD,
+            Constants.ID_STATION_EVENT_FIELD,
+            Constants.ID_CHANNEL_EVENT_FIELD);
+
+    // the summary is logged on every invocation, the detail only at FINE or on the sampled invocations
+    private static final EventTrace TRACE = new EventTrace(0.0, Constants.EVENT_TRACE_RAW_MAX_CHARS);
+
+    @Param({"10", "100", "1000"})
+    public int batchSize;
+
+    private final NodoVerifyKOEventToTableStorage function = new NodoVerifyKOEventToTableStorage();
+
+    private List<String> events;
+
+    private List<Map<String, Object>> properties;
+
+    private List<String> rawTimestamps;
+
+    private List<EventFieldExtractor.ExtractedFields> extractedEvents;
+
+    private List<Map<String, Object>> entities;
+
+    private Map<String, List<TableTransactionAction>> partitionedEvents;
+
+    @Setup
+    public void setup() throws Exception {
+        String template = TestUtil.readStringFromFile("benchmark/verify_ko_event.json");
+        LocalDateTime start = LocalDateTime.of(2023, 12, 12, 23, 50, 0);
+        events = new ArrayList<>(batchSize);
+        properties = new ArrayList<>(batchSize);
+        rawTimestamps = new ArrayList<>(batchSize);
+        extractedEvents = new ArrayList<>(batchSize);
+        entities = new ArrayList<>(batchSize);
+        for (int index = 0; index < batchSize; index++) {
+            // the events of the batch span midnight and have fractions of seconds with a variable number of digits
+            String timestamp = start.plusSeconds(index * 1200L / batchSize).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "." + "860654".substring(0, 1 + index % 6);
+            String event = template
+                    .replace("7f1b2c9e-3d4a-4b5c-8e6f-9a0b1c2d3e4f", String.format("7f1b2c9e-3d4a-4b5c-8e6f-%012d", index))
+                    .replace("2023-12-12T18:34:39.860654", timestamp);
+            events.add(event);
+            properties.add(generateProperties(index));
+            rawTimestamps.add(timestamp);
+            extractedEvents.add(EXTRACTOR.extract(event));
+            entities.add(function.toEventToPersist(event, properties.get(index)).getEntity());
+        }
+        partitionedEvents = new HashMap<>();
+        entities.forEach(entity -> function.addToBatch(partitionedEvents, entity));
+    }
+
+    private static Map<String, Object> generateProperties(int index) {
+        Map<String, Object> eventProperties = new LinkedHashMap<>();
+        eventProperties.put("content-type", "application/json");
+        eventProperties.put("event-type", "VERIFY_KO");
+        eventProperties.put("app-name", "nodo-dei-pagamenti");
+        eventProperties.put("app-version", "2.14.3");
+        eventProperties.put("x-correlation-id", "c0ffee00-0000-4000-8000-" + String.format("%012d", index));
+        eventProperties.put("serviceIdentifier", "NDP001PROD");
+        eventProperties.put("retry_count", index % 3);
+        eventProperties.put("is-test", false);
+        return eventProperties;
+    }
+
+    @Benchmark
+    public void parseEvents(Blackhole blackhole) throws Exception {
+        for (String event : events) {
+            blackhole.consume(EXTRACTOR.extract(event));
+        }
+    }
+
+    @Benchmark
+    public void parseTimestamp(Blackhole blackhole) {
+        for (String timestamp : rawTimestamps) {
+            FaultBeanTimestampCodec.ParsedTimestamp parsedTimestamp = FaultBeanTimestampCodec.parse(timestamp);
+            blackhole.consume(parsedTimestamp.toLocalDateTime());
+            blackhole.consume(parsedTimestamp.getEpochSecond());
+        }
+    }
+
+    /**
+     * The timestamp parsing previously used by the function: padding with String.format and parsing with a new formatter.
+     */
+    @Benchmark
+    public void legacyParseTimestamp(Blackhole blackhole) {
+        for (String timestamp : rawTimestamps) {
+            int fractionLength = timestamp.length() - timestamp.indexOf('.') - 1;
+            String fixedTimestamp = fractionLength < 6 ? String.format("%s%s", timestamp, "0".repeat(6 - fractionLength)) : timestamp;
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS");
+            LocalDateTime dateTime = LocalDateTime.parse(fixedTimestamp, formatter);
+            blackhole.consume(dateTime);
+            blackhole.consume(dateTime.toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    @Benchmark
+    public void replaceDashWithUppercase(Blackhole blackhole) {
+        for (Map<String, Object> eventProperties : properties) {
+            for (String property : eventProperties.keySet()) {
+                blackhole.consume(function.replaceDashWithUppercase(property));
+            }
+        }
+    }
+
+    @Benchmark
+    public void generateRowKey(Blackhole blackhole) {
+        for (EventFieldExtractor.ExtractedFields event : extractedEvents) {
+            blackhole.consume(function.generateRowKey(event, "1702406079"));
+        }
+    }
+
+    @Benchmark
+    public Map<String, List<TableTransactionAction>> addToBatch() {
+        Map<String, List<TableTransactionAction>> partitions = new HashMap<>();
+        for (Map<String, Object> entity : entities) {
+            function.addToBatch(partitions, entity);
+        }
+        return partitions;
+    }
+
+    @Benchmark
+    public String summarizeTrace() {
+        return TRACE.summarize(partitionedEvents);
+    }
+
+    @Benchmark
+    public String detailTrace() {
+        return TRACE.detail(partitionedEvents);
+    }
+
+    @Benchmark
+    public String transformBatch() throws Exception {
+        Map<String, List<TableTransactionAction>> partitions = new HashMap<>();
+        for (int index = 0; index < batchSize; index++) {
+            EventToPersist eventToPersist = function.toEventToPersist(events.get(index), properties.get(index));
+            function.addToBatch(partitions, eventToPersist.getEntity());
+        }
+        return TRACE.summarize(partitions);
+    }
+}
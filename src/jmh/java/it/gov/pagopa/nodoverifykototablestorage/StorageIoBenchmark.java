@@ -0,0 +1,97 @@
+package it.gov.pagopa.nodoverifykototablestorage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.azure.core.util.BinaryData;
+import com.azure.data.tables.TableClient;
+import com.azure.data.tables.TableServiceClientBuilder;
+import com.azure.data.tables.models.TableEntity;
+import com.azure.data.tables.models.TableTransactionAction;
+import com.azure.data.tables.models.TableTransactionActionType;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import it.gov.pagopa.nodoverifykototablestorage.util.ParallelTaskRunner;
+import it.gov.pagopa.nodoverifykototablestorage.util.TestUtil;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the execution of the storage I/O of a batch (one blob upload per event and one table transaction per partition)
+ * sequentially, on a platform thread pool and on virtual threads, against a local storage emulator such as Azurite.
+ * The benchmark runs only when {@code AZURITE_CONNECTION_STRING} is set, and needs the Java 21 runtime for the virtual threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StorageIoBenchmark {
+
+    private static final String CONNECTION_STRING_ENV = "AZURITE_CONNECTION_STRING";
+
+    private static final int EVENTS_PER_PARTITION = 10;
+
+    public enum ExecutionMode {
+        SEQUENTIAL, PLATFORM, VIRTUAL
+    }
+
+    @Param({"SEQUENTIAL", "PLATFORM", "VIRTUAL"})
+    public ExecutionMode mode;
+
+    @Param({"100"})
+    public int batchSize;
+
+    @Param({"64"})
+    public int parallelism;
+
+    private final AtomicLong invocation = new AtomicLong();
+
+    private BlobContainerClient containerClient;
+
+    private TableClient tableClient;
+
+    private ParallelTaskRunner runner;
+
+    private byte[] body;
+
+    @Setup
+    public void setup() throws Exception {
+        String connectionString = System.getenv(CONNECTION_STRING_ENV);
+        if (connectionString == null || connectionString.isBlank()) {
+            throw new IllegalStateException("Skipped: set " + CONNECTION_STRING_ENV + " to run the benchmark against a local storage emulator.");
+        }
+        if (mode == ExecutionMode.VIRTUAL && !ParallelTaskRunner.isVirtualThreadSupported()) {
+            throw new IllegalStateException("Skipped: virtual threads need the Java 21 runtime.");
+        }
+        containerClient = new BlobServiceClientBuilder().connectionString(connectionString).buildClient().getBlobContainerClient("verifyko-benchmark");
+        containerClient.createIfNotExists();
+        tableClient = new TableServiceClientBuilder().connectionString(connectionString).buildClient().createTableIfNotExists("verifykobenchmark");
+        if (tableClient == null) {
+            tableClient = new TableServiceClientBuilder().connectionString(connectionString).buildClient().getTableClient("verifykobenchmark");
+        }
+        runner = new ParallelTaskRunner("benchmark", mode == ExecutionMode.SEQUENTIAL ? 1 : parallelism, mode == ExecutionMode.VIRTUAL);
+        body = TestUtil.readStringFromFile("benchmark/verify_ko_event.json").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int storeBatch() {
+        String prefix = mode + "-" + invocation.incrementAndGet() + "-";
+        List<String> rowKeys = new ArrayList<>(batchSize);
+        for (int index = 0; index < batchSize; index++) {
+            rowKeys.add(prefix + index);
+        }
+        int failures = runner.runAll(rowKeys, rowKey -> containerClient.getBlobClient(rowKey).upload(BinaryData.fromBytes(body), true)).size();
+
+        List<List<TableTransactionAction>> transactions = new ArrayList<>();
+        for (int index = 0; index < batchSize; index += EVENTS_PER_PARTITION) {
+            List<TableTransactionAction> transaction = new ArrayList<>(EVENTS_PER_PARTITION);
+            for (String rowKey : rowKeys.subList(index, Math.min(index + EVENTS_PER_PARTITION, batchSize))) {
+                TableEntity entity = new TableEntity(prefix + (index / EVENTS_PER_PARTITION), rowKey).addProperty("blobBodyRef", rowKey);
+                transaction.add(new TableTransactionAction(TableTransactionActionType.UPSERT_REPLACE, entity));
+            }
+            transactions.add(transaction);
+        }
+        return failures + runner.runAll(transactions, tableClient::submitTransaction).size();
+    }
+}
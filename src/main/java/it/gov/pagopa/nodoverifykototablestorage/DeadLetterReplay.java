@@ -0,0 +1,155 @@
+package it.gov.pagopa.nodoverifykototablestorage;
+
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import it.gov.pagopa.nodoverifykototablestorage.model.DeadLetterEntry;
+import it.gov.pagopa.nodoverifykototablestorage.util.Constants;
+import it.gov.pagopa.nodoverifykototablestorage.util.DeadLetterReplayReport;
+import it.gov.pagopa.nodoverifykototablestorage.util.DeadLetterSink;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Azure Functions with Azure Http trigger.
+ */
+public class DeadLetterReplay {
+
+	private final DeadLetterSink deadLetterSink;
+
+	private final NodoVerifyKOEventToTableStorage ingestion;
+
+	public DeadLetterReplay() {
+		this(NodoVerifyKOEventToTableStorage.getDeadLetterSink(), new NodoVerifyKOEventToTableStorage());
+	}
+
+	DeadLetterReplay(DeadLetterSink deadLetterSink, NodoVerifyKOEventToTableStorage ingestion) {
+		this.deadLetterSink = deadLetterSink;
+		this.ingestion = ingestion;
+	}
+
+	/**
+	 * This function will be invoked when a Http Trigger occurs, ingesting again the oldest spooled batches of events
+	 * that exhausted the retries. The replayed entries are removed from the spool, the failed ones are kept.
+	 * The query parameters maxEntries and eventsPerSecond bound the replayed entries and their rate.
+	 * @return the number of replayed entries and events, and the error of each failed entry
+	 */
+	@FunctionName("DeadLetterReplay")
+	public HttpResponseMessage run (
+			@HttpTrigger(name = "DeadLetterReplayTrigger",
+			methods = {HttpMethod.POST},
+			route = "deadletter/replay",
+			authLevel = AuthorizationLevel.FUNCTION) HttpRequestMessage<Optional<String>> request,
+			final ExecutionContext context) {
+
+		Logger logger = context.getLogger();
+		logger.log(Level.INFO, "Invoked dead letter replay HTTP trigger for nodo-verifyko-to-tablestorage.");
+		if (deadLetterSink == null) {
+			return request.createResponseBuilder(HttpStatus.NOT_FOUND).body("The dead letter spool is disabled").build();
+		}
+
+		int maxEntries;
+		int eventsPerSecond;
+		try {
+			maxEntries = getIntParameter(request, "maxEntries", Constants.DEAD_LETTER_REPLAY_MAX_ENTRIES);
+			eventsPerSecond = getIntParameter(request, "eventsPerSecond", Constants.DEAD_LETTER_REPLAY_EVENTS_PER_SECOND);
+		} catch (IllegalArgumentException e) {
+			return request.createResponseBuilder(HttpStatus.BAD_REQUEST).body(e.getMessage()).build();
+		}
+
+		try {
+			return request.createResponseBuilder(HttpStatus.OK)
+					.header("Content-Type", "application/json")
+					.body(replay(logger, context, maxEntries, eventsPerSecond))
+					.build();
+		} catch (IOException e) {
+			logger.log(Level.SEVERE, e, () -> "[ALERT][DEAD LETTER][VerifyKOToTS] Could not list the spooled events, error: " + e);
+			return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR).body("Could not list the spooled events").build();
+		}
+	}
+
+	DeadLetterReplayReport replay(Logger logger, ExecutionContext context, int maxEntries, int eventsPerSecond) throws IOException {
+		List<String> ids = deadLetterSink.list(maxEntries);
+		Map<String, String> failures = new TreeMap<>();
+		int replayedEntries = 0;
+		int replayedEvents = 0;
+		int attemptedEvents = 0;
+		long start = System.nanoTime();
+		for (String id : ids) {
+			try {
+				DeadLetterEntry entry = deadLetterSink.read(id);
+				List<String> events = entry.getEvents();
+				if (entry.getProperties() == null || entry.getProperties().size() != events.size()) {
+					failures.put(id, "Lengths of events and properties do not match");
+					continue;
+				}
+				@SuppressWarnings("unchecked")
+				Map<String, Object>[] properties = entry.getProperties().toArray(new Map[0]);
+				attemptedEvents += events.size();
+				// replayed as a retry, so that the events saved by the previous attempts are skipped
+				if (ingestion.ingest(logger, context, events, properties, entry.getRetryIndex(), true)) {
+					deadLetterSink.delete(id);
+					replayedEntries++;
+					replayedEvents += events.size();
+					logger.log(Level.INFO, () -> String.format("Replayed [%d] spooled events: DeadLetter [%s], InvocationId [%s]", events.size(), id, entry.getInvocationId()));
+				} else {
+					failures.put(id, "Could not save all the events on Azure Table Storage");
+				}
+			} catch (Exception e) {
+				failures.put(id, e.toString());
+			}
+			if (!waitForRate(start, attemptedEvents, eventsPerSecond)) {
+				break;
+			}
+		}
+		failures.forEach((id, error) -> logger.log(Level.SEVERE, () -> "[ALERT][DEAD LETTER][VerifyKOToTS] Could not replay the spooled events of " + id + ", error: " + error));
+		return DeadLetterReplayReport.builder()
+				.replayedEntries(replayedEntries)
+				.replayedEvents(replayedEvents)
+				.failures(failures)
+				.build();
+	}
+
+	/**
+	 * Wait until the events replayed since the start respect the rate.
+	 * @return false if the wait was interrupted
+	 */
+	private static boolean waitForRate(long start, int events, int eventsPerSecond) {
+		long waitNanos = TimeUnit.SECONDS.toNanos(events) / Math.max(1, eventsPerSecond) - (System.nanoTime() - start);
+		if (waitNanos <= 0) {
+			return true;
+		}
+		try {
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static int getIntParameter(HttpRequestMessage<Optional<String>> request, String name, int defaultValue) {
+		String value = request.getQueryParameters().get(name);
+		if (value == null || value.isBlank()) {
+			return defaultValue;
+		}
+		try {
+			int parsedValue = Integer.parseInt(value.trim());
+			if (parsedValue > 0) {
+				return parsedValue;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("The parameter " + name + " must be a positive integer");
+	}
+}
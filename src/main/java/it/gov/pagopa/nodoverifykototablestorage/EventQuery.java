@@ -0,0 +1,324 @@
+package it.gov.pagopa.nodoverifykototablestorage;
+
+import com.azure.core.http.rest.PagedResponse;
+import com.azure.core.util.BinaryData;
+import com.azure.core.util.FluxUtil;
+import com.azure.data.tables.TableAsyncClient;
+import com.azure.data.tables.models.ListEntitiesOptions;
+import com.azure.data.tables.models.TableEntity;
+import com.azure.storage.blob.BlobAsyncClient;
+import com.azure.storage.blob.BlobContainerAsyncClient;
+import com.azure.storage.blob.models.BlobRange;
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import it.gov.pagopa.nodoverifykototablestorage.model.EventQueryCriteria;
+import it.gov.pagopa.nodoverifykototablestorage.util.BodyCompression;
+import it.gov.pagopa.nodoverifykototablestorage.util.Constants;
+import it.gov.pagopa.nodoverifykototablestorage.util.EventQueryPage;
+import it.gov.pagopa.nodoverifykototablestorage.util.EventQueryToken;
+import it.gov.pagopa.nodoverifykototablestorage.util.ObjectMapperUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.Temporal;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+
+/**
+ * Azure Functions with Azure Http trigger.
+ */
+public class EventQuery {
+
+	private static final List<String> PROJECTED_COLUMNS = List.of(
+			Constants.PARTITION_KEY_TABLESTORAGE_EVENT_FIELD,
+			Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD,
+			Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD,
+			Constants.DATE_TIME_EVENT_FIELD,
+			Constants.NOTICE_NUMBER_TABLESTORAGE_EVENT_FIELD,
+			Constants.ID_PA_TABLESTORAGE_EVENT_FIELD,
+			Constants.ID_PSP_TABLESTORAGE_EVENT_FIELD,
+			Constants.ID_STATION_TABLESTORAGE_EVENT_FIELD,
+			Constants.ID_CHANNEL_TABLESTORAGE_EVENT_FIELD,
+			Constants.BLOB_BODY_REFERENCE_TABLESTORAGE_EVENT_FIELD);
+
+	private static final String BODY_FIELD = "body";
+
+	private static final String BODY_ERROR_FIELD = "bodyError";
+
+	private final Supplier<TableAsyncClient> tableClientSupplier;
+
+	private final Supplier<BlobContainerAsyncClient> containerClientSupplier;
+
+	public EventQuery() {
+		// the query only reads, so it does not create the table and the container if missing
+		this(NodoVerifyKOEventToTableStorage::getReadOnlyTableAsyncClient, NodoVerifyKOEventToTableStorage::getReadOnlyBlobContainerAsyncClient);
+	}
+
+	EventQuery(Supplier<TableAsyncClient> tableClientSupplier, Supplier<BlobContainerAsyncClient> containerClientSupplier) {
+		this.tableClientSupplier = tableClientSupplier;
+		this.containerClientSupplier = containerClientSupplier;
+	}
+
+	/**
+	 * This function will be invoked when a Http Trigger occurs, returning a page of the events saved in a time range.
+	 * The query parameters from and to (ISO-8601 local date-times, on the clock of the faultBean timestamp) are required,
+	 * while noticeNumber, idPA and idPsp optionally filter the events. Only the partitions that can contain the events
+	 * are read, in parallel, and the next page is requested passing back the returned continuationToken with the same
+	 * criteria. With includeBody=true the body of each event is read from Blob Storage.
+	 * @return the events of the page and the token of the next page, if any
+	 */
+	@FunctionName("EventQuery")
+	public HttpResponseMessage run (
+			@HttpTrigger(name = "EventQueryTrigger",
+			methods = {HttpMethod.GET},
+			route = "events",
+			authLevel = AuthorizationLevel.FUNCTION) HttpRequestMessage<Optional<String>> request,
+			final ExecutionContext context) {
+
+		Logger logger = context.getLogger();
+		logger.log(Level.INFO, "Invoked event query HTTP trigger for nodo-verifyko-to-tablestorage.");
+
+		EventQueryCriteria criteria;
+		Map<String, String> cursors;
+		try {
+			Map<String, String> parameters = request.getQueryParameters();
+			criteria = parseCriteria(parameters);
+			cursors = getCursors(getPartitionKeys(criteria), parameters.get("continuationToken"));
+		} catch (IllegalArgumentException e) {
+			return request.createResponseBuilder(HttpStatus.BAD_REQUEST).body(e.getMessage()).build();
+		}
+
+		try {
+			return request.createResponseBuilder(HttpStatus.OK)
+					.header("Content-Type", "application/json")
+					.body(query(criteria, cursors))
+					.build();
+		} catch (Exception e) {
+			logger.log(Level.SEVERE, e, () -> "[ALERT][VerifyKOToTS] Could not query the events on Azure Table Storage, error: " + e);
+			return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR).body("Could not query the events").build();
+		}
+	}
+
+	EventQueryPage query(EventQueryCriteria criteria, Map<String, String> cursors) throws IOException {
+		TableAsyncClient tableClient = tableClientSupplier.get();
+		Map<String, String> remainingCursors = new LinkedHashMap<>(cursors);
+		List<TableEntity> entities = new ArrayList<>();
+		boolean progressed = true;
+		while (progressed && entities.size() < criteria.getPageSize() && !remainingCursors.isEmpty()) {
+			// the next partitions are read in parallel, each one up to the number of events still missing in the page
+			List<String> partitionKeys = remainingCursors.keySet().stream().limit(Math.max(1, Constants.QUERY_PARALLELISM)).collect(Collectors.toList());
+			int missingEvents = criteria.getPageSize() - entities.size();
+			List<Optional<PagedResponse<TableEntity>>> pages = Flux.fromIterable(partitionKeys)
+					.flatMapSequential(partitionKey -> tableClient.listEntities(buildOptions(criteria, partitionKey, remainingCursors.get(partitionKey), missingEvents))
+							.byPage()
+							.next()
+							.map(Optional::of)
+							.defaultIfEmpty(Optional.empty()), partitionKeys.size())
+					.collectList()
+					.block();
+
+			// the events are taken in the order of the partitions, the partitions not completely returned keep a cursor
+			progressed = false;
+			for (int index = 0; index < partitionKeys.size() && entities.size() < criteria.getPageSize(); index++) {
+				String partitionKey = partitionKeys.get(index);
+				PagedResponse<TableEntity> page = pages.get(index).orElse(null);
+				List<TableEntity> partitionEntities = page == null ? List.of() : page.getValue();
+				int taken = Math.min(partitionEntities.size(), criteria.getPageSize() - entities.size());
+				entities.addAll(partitionEntities.subList(0, taken));
+				// the partition resumes from the first event not taken, or from where the service stopped scanning:
+				// a page filtered on non-key columns can be empty and still have a continuation
+				String nextRowKey = taken < partitionEntities.size()
+						? partitionEntities.get(taken).getRowKey()
+						: getNextRowKey(partitionKey, page);
+				if (nextRowKey == null) {
+					remainingCursors.remove(partitionKey);
+					progressed = true;
+				} else if (!nextRowKey.equals(remainingCursors.put(partitionKey, nextRowKey))) {
+					progressed = true;
+				}
+			}
+		}
+
+		List<Map<String, Object>> events = entities.stream().map(EventQuery::toEvent).collect(Collectors.toList());
+		if (criteria.isIncludeBody()) {
+			resolveBodies(events);
+		}
+		return EventQueryPage.builder()
+				.events(events)
+				.continuationToken(EventQueryToken.encode(remainingCursors))
+				.build();
+	}
+
+	/**
+	 * @return the RowKey the service resumes the scan of the partition from, null if the partition was completely scanned
+	 */
+	static String getNextRowKey(String partitionKey, PagedResponse<TableEntity> page) {
+		String continuationToken = page == null ? null : page.getContinuationToken();
+		if (continuationToken == null) {
+			return null;
+		}
+		// the token of the Tables SDK is the NextPartitionKey and the NextRowKey of the service, separated by a semicolon;
+		// a continuation on another partition means that the requested one is completely scanned
+		String[] nextKeys = continuationToken.split(";", 2);
+		return nextKeys.length == 2 && nextKeys[0].equals(partitionKey) && !nextKeys[1].isEmpty() ? nextKeys[1] : null;
+	}
+
+	static ListEntitiesOptions buildOptions(EventQueryCriteria criteria, String partitionKey, String nextRowKey, int top) {
+		StringBuilder filter = new StringBuilder(String.format("PartitionKey eq '%s'", escape(partitionKey)));
+		if (!nextRowKey.isEmpty()) {
+			filter.append(String.format(" and RowKey ge '%s'", escape(nextRowKey)));
+		}
+		// the timestamp column is an Int64, whose literals need the L suffix
+		filter.append(String.format(" and %1$s ge %2$dL and %1$s lt %3$dL", Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD,
+				criteria.getFrom().toEpochSecond(ZoneOffset.UTC), criteria.getTo().toEpochSecond(ZoneOffset.UTC)));
+		appendEqualsFilter(filter, Constants.NOTICE_NUMBER_TABLESTORAGE_EVENT_FIELD, criteria.getNoticeNumber());
+		appendEqualsFilter(filter, Constants.ID_PA_TABLESTORAGE_EVENT_FIELD, criteria.getIdPA());
+		appendEqualsFilter(filter, Constants.ID_PSP_TABLESTORAGE_EVENT_FIELD, criteria.getIdPsp());
+		return new ListEntitiesOptions()
+				.setFilter(filter.toString())
+				.setSelect(PROJECTED_COLUMNS)
+				.setTop(top);
+	}
+
+	private void resolveBodies(List<Map<String, Object>> events) {
+		BlobContainerAsyncClient containerClient = containerClientSupplier.get();
+		Flux.fromIterable(events)
+				.filter(event -> event.get(Constants.BLOB_BODY_REFERENCE_TABLESTORAGE_EVENT_FIELD) instanceof String)
+				.flatMap(event -> readBody(containerClient, (String) event.get(Constants.BLOB_BODY_REFERENCE_TABLESTORAGE_EVENT_FIELD))
+						.doOnNext(body -> event.put(BODY_FIELD, body))
+						.onErrorResume(e -> {
+							// a body that cannot be read does not fail the whole page
+							event.put(BODY_ERROR_FIELD, e.toString());
+							return Mono.empty();
+						}), Math.max(1, Constants.QUERY_PARALLELISM))
+				.then()
+				.block();
+	}
+
+	private static Mono<String> readBody(BlobContainerAsyncClient containerClient, String blobBodyReference) {
+		return Mono.fromCallable(() -> ObjectMapperUtils.readValue(blobBodyReference, Map.class))
+				.flatMap(reference -> {
+					BlobAsyncClient blobClient = containerClient.getBlobAsyncClient((String) reference.get("fileName"));
+					BodyCompression compression = BodyCompression.fromContentEncoding((String) reference.get("compression"));
+					Mono<byte[]> content;
+					if (reference.get("offset") instanceof Number) {
+						// a body packed in a segment blob is read with a ranged read of its own bytes
+						BlobRange range = new BlobRange(((Number) reference.get("offset")).longValue(), ((Number) reference.get("length")).longValue());
+						content = blobClient.downloadStreamWithResponse(range, null, null, false)
+								.flatMap(response -> FluxUtil.collectBytesInByteBufferStream(response.getValue()));
+					} else {
+						content = blobClient.downloadContent().map(BinaryData::toBytes);
+					}
+					return content.map(bytes -> new String(compression.decompress(bytes), StandardCharsets.UTF_8));
+				});
+	}
+
+	private static Map<String, Object> toEvent(TableEntity entity) {
+		Map<String, Object> event = new LinkedHashMap<>();
+		for (String column : PROJECTED_COLUMNS) {
+			Object value = entity.getProperty(column);
+			if (value != null) {
+				event.put(column, value instanceof Temporal ? value.toString() : value);
+			}
+		}
+		return event;
+	}
+
+	static EventQueryCriteria parseCriteria(Map<String, String> parameters) {
+		LocalDateTime from = getDateTimeParameter(parameters, "from");
+		LocalDateTime to = getDateTimeParameter(parameters, "to");
+		if (!to.isAfter(from)) {
+			throw new IllegalArgumentException("The parameter to must be after from");
+		}
+		if (Duration.between(from, to).compareTo(Duration.ofDays(Constants.QUERY_MAX_RANGE_DAYS)) > 0) {
+			throw new IllegalArgumentException("The time range cannot be longer than " + Constants.QUERY_MAX_RANGE_DAYS + " days");
+		}
+		return EventQueryCriteria.builder()
+				.from(from)
+				.to(to)
+				.noticeNumber(getStringParameter(parameters, "noticeNumber"))
+				.idPA(getStringParameter(parameters, "idPA"))
+				.idPsp(getStringParameter(parameters, "idPsp"))
+				.pageSize(Math.min(getIntParameter(parameters, "pageSize", Constants.QUERY_DEFAULT_PAGE_SIZE), Constants.QUERY_MAX_PAGE_SIZE))
+				.includeBody(Boolean.parseBoolean(getStringParameter(parameters, "includeBody")))
+				.build();
+	}
+
+	/**
+	 * @return the partitions that can contain the events, derived with the configured PartitionKey strategy
+	 */
+	static List<String> getPartitionKeys(EventQueryCriteria criteria) {
+		Map<String, Object> columns = new HashMap<>();
+		Optional.ofNullable(criteria.getIdPA()).ifPresent(idPA -> columns.put(Constants.ID_PA_TABLESTORAGE_EVENT_FIELD, idPA));
+		Optional.ofNullable(criteria.getIdPsp()).ifPresent(idPsp -> columns.put(Constants.ID_PSP_TABLESTORAGE_EVENT_FIELD, idPsp));
+		return Constants.PARTITION_KEY_STRATEGY.getPartitionKeys(criteria.getFrom(), criteria.getTo(), columns, Constants.PARTITION_KEY_BUCKETS);
+	}
+
+	static Map<String, String> getCursors(List<String> partitionKeys, String continuationToken) {
+		if (continuationToken == null || continuationToken.isBlank()) {
+			Map<String, String> cursors = new LinkedHashMap<>();
+			partitionKeys.forEach(partitionKey -> cursors.put(partitionKey, ""));
+			return cursors;
+		}
+		Map<String, String> cursors = EventQueryToken.decode(continuationToken);
+		if (!partitionKeys.containsAll(cursors.keySet())) {
+			throw new IllegalArgumentException("The continuation token does not match the query");
+		}
+		return cursors;
+	}
+
+	private static void appendEqualsFilter(StringBuilder filter, String column, String value) {
+		if (value != null) {
+			filter.append(String.format(" and %s eq '%s'", column, escape(value)));
+		}
+	}
+
+	private static String escape(String value) {
+		return value.replace("'", "''");
+	}
+
+	private static String getStringParameter(Map<String, String> parameters, String name) {
+		String value = parameters.get(name);
+		return value == null || value.isBlank() ? null : value.trim();
+	}
+
+	private static LocalDateTime getDateTimeParameter(Map<String, String> parameters, String name) {
+		String value = getStringParameter(parameters, name);
+		if (value == null) {
+			throw new IllegalArgumentException("The parameter " + name + " is required");
+		}
+		try {
+			return LocalDateTime.parse(value);
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("The parameter " + name + " must be an ISO-8601 local date-time, i.e. 2024-01-05T08:00:00");
+		}
+	}
+
+	private static int getIntParameter(Map<String, String> parameters, String name, int defaultValue) {
+		String value = getStringParameter(parameters, name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			int parsedValue = Integer.parseInt(value);
+			if (parsedValue > 0) {
+				return parsedValue;
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("The parameter " + name + " must be a positive integer");
+	}
+}
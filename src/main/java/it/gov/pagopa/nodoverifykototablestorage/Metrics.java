@@ -0,0 +1,37 @@
+package it.gov.pagopa.nodoverifykototablestorage;
+
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import it.gov.pagopa.nodoverifykototablestorage.util.PipelineMetrics;
+
+import java.util.Optional;
+import java.util.logging.Level;
+
+
+/**
+ * Azure Functions with Azure Http trigger.
+ */
+public class Metrics {
+
+	/**
+	 * This function will be invoked when a Http Trigger occurs, returning the metrics of the ingestion pipeline
+	 * collected by this instance since its start.
+	 * @return the statistics of each pipeline stage, of the batch, transaction and blob sizes, and the event counts
+	 */
+	@FunctionName("Metrics")
+	public HttpResponseMessage run (
+			@HttpTrigger(name = "MetricsTrigger",
+			methods = {HttpMethod.GET},
+			route = "metrics",
+			authLevel = AuthorizationLevel.FUNCTION) HttpRequestMessage<Optional<String>> request,
+			final ExecutionContext context) {
+
+		context.getLogger().log(Level.FINE, "Invoked metrics HTTP trigger for nodo-verifyko-to-tablestorage.");
+		return request.createResponseBuilder(HttpStatus.OK)
+				.header("Content-Type", "application/json")
+				.body(PipelineMetrics.getDefault().getReport())
+				.build();
+	}
+}
@@ -1,35 +1,66 @@
 package it.gov.pagopa.nodoverifykototablestorage;
 
 import com.azure.core.util.BinaryData;
+import com.azure.core.util.Context;
+import com.azure.data.tables.TableAsyncClient;
 import com.azure.data.tables.TableClient;
 import com.azure.data.tables.TableServiceClient;
-import com.azure.data.tables.TableServiceClientBuilder;
+import com.azure.data.tables.models.ListEntitiesOptions;
 import com.azure.data.tables.models.TableEntity;
 import com.azure.data.tables.models.TableTransactionAction;
 import com.azure.data.tables.models.TableTransactionActionType;
+import com.azure.storage.blob.BlobAsyncClient;
 import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.BlobContainerAsyncClient;
 import com.azure.storage.blob.BlobContainerClient;
-import com.azure.storage.blob.BlobServiceClient;
-import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobHttpHeaders;
+import com.azure.storage.blob.models.BlobRequestConditions;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.annotation.*;
 import it.gov.pagopa.nodoverifykototablestorage.exception.AppException;
 import it.gov.pagopa.nodoverifykototablestorage.exception.BlobStorageUploadException;
 import it.gov.pagopa.nodoverifykototablestorage.model.BlobBodyReference;
+import it.gov.pagopa.nodoverifykototablestorage.model.BlobBodyUpload;
+import it.gov.pagopa.nodoverifykototablestorage.model.DeadLetterEntry;
+import it.gov.pagopa.nodoverifykototablestorage.model.EventToPersist;
+import it.gov.pagopa.nodoverifykototablestorage.util.AdaptiveConcurrencyLimiter;
+import it.gov.pagopa.nodoverifykototablestorage.util.BlobDeadLetterSink;
+import it.gov.pagopa.nodoverifykototablestorage.util.BlobBodyLayout;
+import it.gov.pagopa.nodoverifykototablestorage.util.BodyCompression;
+import it.gov.pagopa.nodoverifykototablestorage.util.BodySegmentPacker;
 import it.gov.pagopa.nodoverifykototablestorage.util.Constants;
-import it.gov.pagopa.nodoverifykototablestorage.util.ObjectMapperUtils;
-
-import java.io.ByteArrayInputStream;
+import it.gov.pagopa.nodoverifykototablestorage.util.ContentHash;
+import it.gov.pagopa.nodoverifykototablestorage.util.DeadLetterSink;
+import it.gov.pagopa.nodoverifykototablestorage.util.DuplicateEventFilter;
+import it.gov.pagopa.nodoverifykototablestorage.util.EventCompletionRegistry;
+import it.gov.pagopa.nodoverifykototablestorage.util.EventFieldExtractor;
+import it.gov.pagopa.nodoverifykototablestorage.util.EventTrace;
+import it.gov.pagopa.nodoverifykototablestorage.util.FaultBeanTimestampCodec;
+import it.gov.pagopa.nodoverifykototablestorage.util.FileDeadLetterSink;
+import it.gov.pagopa.nodoverifykototablestorage.util.KoCounterRollup;
+import it.gov.pagopa.nodoverifykototablestorage.util.ParallelTaskRunner;
+import it.gov.pagopa.nodoverifykototablestorage.util.PipelineMetrics;
+import it.gov.pagopa.nodoverifykototablestorage.util.PipelineStage;
+import it.gov.pagopa.nodoverifykototablestorage.util.ProcessingEngine;
+import it.gov.pagopa.nodoverifykototablestorage.util.PropertyNameNormalizer;
+import it.gov.pagopa.nodoverifykototablestorage.util.SecondaryIndex;
+import it.gov.pagopa.nodoverifykototablestorage.util.StorageClientProvider;
+import it.gov.pagopa.nodoverifykototablestorage.util.TablePropertyProjection;
+import it.gov.pagopa.nodoverifykototablestorage.util.TableTransactionPlanner;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 
 /**
@@ -40,9 +71,121 @@ public class NodoVerifyKOEventToTableStorage {
 
 	private static final Integer MAX_RETRY_COUNT = 7;
 
-	private static TableServiceClient tableServiceClient = null;
+	private static final StorageClientProvider STORAGE_CLIENTS = new StorageClientProvider(
+			System.getenv("TABLE_STORAGE_CONN_STRING"),
+			System.getenv("BLOB_STORAGE_CONN_STRING"),
+			Constants.TABLE_NAME,
+			Constants.BLOB_NAME,
+			StorageClientProvider.buildHttpClient(
+					Constants.STORAGE_HTTP_MAX_CONNECTIONS,
+					Duration.ofSeconds(Constants.STORAGE_HTTP_MAX_IDLE_SECONDS),
+					Duration.ofSeconds(Constants.STORAGE_HTTP_CONNECT_TIMEOUT_SECONDS),
+					Duration.ofSeconds(Constants.STORAGE_HTTP_RESPONSE_TIMEOUT_SECONDS)));
+
+	private static final ParallelTaskRunner BLOB_UPLOAD_RUNNER = new ParallelTaskRunner("blob-upload", Constants.BLOB_UPLOAD_PARALLELISM, Constants.STORAGE_IO_VIRTUAL_THREADS);
+
+	private static final ParallelTaskRunner TABLE_TRANSACTION_RUNNER = new ParallelTaskRunner("table-transaction", Constants.TABLE_TRANSACTION_PARALLELISM, Constants.STORAGE_IO_VIRTUAL_THREADS);
+
+	// the runners bound the threads, while the limiters adapt the requests in flight to the throttling of the storage
+	private static final AdaptiveConcurrencyLimiter BLOB_UPLOAD_LIMITER = new AdaptiveConcurrencyLimiter(
+			PipelineStage.BLOB_UPLOAD.getTag(),
+			Constants.BLOB_UPLOAD_PARALLELISM,
+			Constants.STORAGE_THROTTLE_MAX_RETRIES,
+			Duration.ofMillis(Constants.STORAGE_THROTTLE_BASE_DELAY_MILLIS),
+			Duration.ofMillis(Constants.STORAGE_THROTTLE_MAX_DELAY_MILLIS));
+
+	private static final AdaptiveConcurrencyLimiter TABLE_TRANSACTION_LIMITER = new AdaptiveConcurrencyLimiter(
+			PipelineStage.TABLE_TRANSACTION.getTag(),
+			Constants.TABLE_TRANSACTION_PARALLELISM,
+			Constants.STORAGE_THROTTLE_MAX_RETRIES,
+			Duration.ofMillis(Constants.STORAGE_THROTTLE_BASE_DELAY_MILLIS),
+			Duration.ofMillis(Constants.STORAGE_THROTTLE_MAX_DELAY_MILLIS));
+
+	private static final TableTransactionPlanner TRANSACTION_PLANNER = new TableTransactionPlanner(Constants.TABLE_TRANSACTION_MAX_ACTIONS, Constants.TABLE_TRANSACTION_MAX_PAYLOAD_BYTES);
+
+	// the fault code is only needed by the KO counters, and an unexpected value of it must not make the event invalid
+	private static final EventFieldExtractor EVENT_FIELD_EXTRACTOR = new EventFieldExtractor(
+			Constants.KO_ROLLUP_ENABLED ? List.of(Constants.FAULTBEAN_FAULT_CODE_EVENT_FIELD) : List.of(),
+			Constants.ID_EVENT_FIELD,
+			Constants.FAULTBEAN_TIMESTAMP_EVENT_FIELD,
+			Constants.NOTICE_NUMBER_EVENT_FIELD,
+			Constants.ID_PA_EVENT_FIELD,
+			Constants.ID_PSP_EVENT_FIELD,
+			Constants.ID_STATION_EVENT_FIELD,
+			Constants.ID_CHANNEL_EVENT_FIELD);
+
+	private static final PropertyNameNormalizer PROPERTY_NAME_NORMALIZER = new PropertyNameNormalizer(Constants.PROPERTY_NAME_CACHE_MAX_ENTRIES);
+
+	private static final TablePropertyProjection PROPERTY_PROJECTION = new TablePropertyProjection(
+			TablePropertyProjection.parseAllowList(Constants.TABLE_PROPERTY_ALLOW_LIST),
+			Constants.TABLE_PROPERTY_MAX_STRING_LENGTH);
+
+	private static final List<SecondaryIndex> SECONDARY_INDEXES = SecondaryIndex.parse(Constants.TABLE_INDEX_FIELDS, Constants.TABLE_NAME);
+
+	private static final KoCounterRollup KO_ROLLUP = Constants.KO_ROLLUP_ENABLED
+			? new KoCounterRollup(KoCounterRollup.parseDimensions(Constants.KO_ROLLUP_DIMENSIONS), Constants.KO_ROLLUP_MAX_ATTEMPTS)
+			: null;
+
+	private static final BodySegmentPacker SEGMENT_PACKER = new BodySegmentPacker(Constants.BLOB_BODY_COMPRESSION, Constants.BLOB_SEGMENT_MAX_BYTES);
+
+	private static final PipelineMetrics PIPELINE_METRICS = PipelineMetrics.getDefault();
+
+	private static final EventTrace EVENT_TRACE = new EventTrace(Constants.EVENT_TRACE_SAMPLE_RATE, Constants.EVENT_TRACE_RAW_MAX_CHARS);
+
+	private static final EventCompletionRegistry COMPLETION_REGISTRY = new EventCompletionRegistry(Constants.COMPLETION_REGISTRY_MAX_ENTRIES, Duration.ofMinutes(Constants.COMPLETION_REGISTRY_TTL_MINUTES));
+
+	private static final DeadLetterSink DEAD_LETTER_SINK = createDeadLetterSink();
+
+	static {
+		PIPELINE_METRICS.registerConcurrencyLimit(BLOB_UPLOAD_LIMITER);
+		PIPELINE_METRICS.registerConcurrencyLimit(TABLE_TRANSACTION_LIMITER);
+		if (Constants.STORAGE_CLIENT_PREWARM) {
+			// the clients are warmed up in background when the worker loads the function, before the first invocation
+			Thread prewarm = new Thread(() -> STORAGE_CLIENTS.prewarm(Constants.PROCESSING_ENGINE, Constants.STORAGE_CLIENT_PREWARM_CONNECTIONS), "verifyko-storage-prewarm");
+			prewarm.setDaemon(true);
+			prewarm.start();
+		}
+	}
+
+	private final ProcessingEngine processingEngine;
+
+	private final DeadLetterSink deadLetterSink;
+
+	public NodoVerifyKOEventToTableStorage() {
+		this(Constants.PROCESSING_ENGINE);
+	}
+
+	NodoVerifyKOEventToTableStorage(ProcessingEngine processingEngine) {
+		this(processingEngine, DEAD_LETTER_SINK);
+	}
+
+	NodoVerifyKOEventToTableStorage(ProcessingEngine processingEngine, DeadLetterSink deadLetterSink) {
+		this.processingEngine = processingEngine;
+		this.deadLetterSink = deadLetterSink;
+	}
+
+	/**
+	 * @return the registry of the persistence steps completed by the instance
+	 */
+	static EventCompletionRegistry getCompletionRegistry() {
+		return COMPLETION_REGISTRY;
+	}
+
+	private static DeadLetterSink createDeadLetterSink() {
+		if (!Constants.DEAD_LETTER_ENABLED) {
+			return null;
+		}
+		return Constants.DEAD_LETTER_DIRECTORY != null
+				? new FileDeadLetterSink(Paths.get(Constants.DEAD_LETTER_DIRECTORY))
+				: new BlobDeadLetterSink(NodoVerifyKOEventToTableStorage::getBlobContainerClient);
+	}
 
-	private static BlobContainerClient blobContainerClient = null;
+	/**
+	 * @return the spool of the events that exhausted the retries, null if the spool is disabled
+	 */
+	public static DeadLetterSink getDeadLetterSink() {
+		return DEAD_LETTER_SINK;
+	}
 
 	@FunctionName("EventHubNodoVerifyKOEventToTSProcessor")
 	@ExponentialBackoffRetry(maxRetryCount = 7, maximumInterval = "24:00:00", minimumInterval = "00:10:00") // retry after 10m, 20m, 40m, 1h20m, 2h40m, 5h20m, 10h40m, for a total of 21h more or less from start retrying to end
@@ -57,173 +200,279 @@ public class NodoVerifyKOEventToTableStorage {
 			final ExecutionContext context) {
 
 		String errorCause = null;
+		String failedStage = PipelineStage.TABLE_TRANSACTION.getTag();
 		boolean isPersistenceOk;
 		int retryIndex = context.getRetryContext() == null ? -1 : context.getRetryContext().getRetrycount();
 
 		Logger logger = context.getLogger();
 		logger.log(Level.FINE, () -> String.format("Persisting [%d] events...", events.size()));
-		String rowKey = "";
+		PIPELINE_METRICS.recordBatchSize(events.size());
 
 		if (retryIndex == MAX_RETRY_COUNT) {
-			logger.log(Level.WARNING, () -> String.format("[ALERT][LAST RETRY][VerifyKOToTS] Performing last retry for event ingestion: InvocationId [%s], Events: %s", context.getInvocationId(), events));
+			logger.log(Level.WARNING, () -> String.format("[ALERT][LAST RETRY][VerifyKOToTS] Performing last retry for event ingestion: InvocationId [%s], Events: %s", context.getInvocationId(), EVENT_TRACE.dumpRaw(events)));
 		}
 
 		try {
 			if (events.size() == properties.length) {
-				Map<String, List<TableTransactionAction>> partitionedEvents = new HashMap<>();
-
-				for (int index = 0; index < properties.length; index++) {
-					String eventInStringForm = events.get(index);
-					final Map<String, Object> event = ObjectMapperUtils.readValue(eventInStringForm, Map.class);
-
-					final Map<String, Object> eventToBeStored = new HashMap<>();
-
-					// update event with the required parameters and other needed fields
-					properties[index].forEach((property, value) -> eventToBeStored.put(replaceDashWithUppercase(property), value));
-
-					Map<String, Object> faultBeanMap = (Map) event.getOrDefault(Constants.FAULTBEAN_EVENT_FIELD, new HashMap<>());
-					String faultBeanTimestamp = (String) faultBeanMap.getOrDefault(Constants.TIMESTAMP_EVENT_FIELD, "ERROR");
-
-					// sometimes faultBeanTimestamp has less than 6 digits regarding microseconds
-					faultBeanTimestamp = fixDateTime(faultBeanTimestamp);
-
-					if (faultBeanTimestamp.contains("ERROR")) {
-						throw new IllegalStateException("Missing " + Constants.FAULTBEAN_EVENT_FIELD + " or " + Constants.FAULTBEAN_TIMESTAMP_EVENT_FIELD);
-					}
-
-					DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS");
-					LocalDateTime dateTime = LocalDateTime.parse(faultBeanTimestamp, formatter);
-					long timestamp = dateTime.toEpochSecond(ZoneOffset.UTC);
-					faultBeanMap.put(Constants.TIMESTAMP_EVENT_FIELD, timestamp);
-					faultBeanMap.put(Constants.DATE_TIME_EVENT_FIELD, faultBeanTimestamp);
-
-					String insertedDateValue = dateTime.getYear() + "-" + dateTime.getMonthValue() + "-" + dateTime.getDayOfMonth();
-
-					// inserting the identification columns on event saved in Table Storage
-					rowKey = generateRowKey(event, String.valueOf(timestamp));
-					eventToBeStored.put(Constants.PARTITION_KEY_TABLESTORAGE_EVENT_FIELD, insertedDateValue);
-					eventToBeStored.put(Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD, rowKey);
-
-					// inserting the additional columns on event saved in Table Storage
-					eventToBeStored.put(Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD, timestamp);
-					eventToBeStored.put(Constants.DATE_TIME_EVENT_FIELD, dateTime);
-					eventToBeStored.put(Constants.NOTICE_NUMBER_TABLESTORAGE_EVENT_FIELD, getEventField(event, Constants.NOTICE_NUMBER_EVENT_FIELD, String.class, Constants.NA));
-					eventToBeStored.put(Constants.ID_PA_TABLESTORAGE_EVENT_FIELD, getEventField(event, Constants.ID_PA_EVENT_FIELD, String.class, Constants.NA));
-					eventToBeStored.put(Constants.ID_PSP_TABLESTORAGE_EVENT_FIELD, getEventField(event, Constants.ID_PSP_EVENT_FIELD, String.class, Constants.NA));
-					eventToBeStored.put(Constants.ID_STATION_TABLESTORAGE_EVENT_FIELD, getEventField(event, Constants.ID_STATION_EVENT_FIELD, String.class, Constants.NA));
-					eventToBeStored.put(Constants.ID_CHANNEL_TABLESTORAGE_EVENT_FIELD, getEventField(event, Constants.ID_CHANNEL_EVENT_FIELD, String.class, Constants.NA));
-					eventToBeStored.put(Constants.BLOB_BODY_REFERENCE_TABLESTORAGE_EVENT_FIELD, storeBodyInBlobAndGetReference(eventInStringForm, rowKey));
-
-					addToBatch(partitionedEvents, eventToBeStored);
+				// on retries, only the events not completely persisted by a previous attempt are processed again
+				isPersistenceOk = ingest(logger, context, events, properties, retryIndex, retryIndex > 0);
+				if (!isPersistenceOk) {
+					errorCause = String.format("[ALERT][VerifyKOToTS] Persistence Exception - Could not save all the events of InvocationId [%s] on Azure Table Storage", context.getInvocationId());
 				}
-
-				logger.log(Level.INFO, () -> String.format("Performing event ingestion: InvocationId [%s], Retry Attempt [%d], Events: %s", context.getInvocationId(), retryIndex, extractTraceForEventsToPersist(partitionedEvents)));
-
-				// save all events in the retrieved batch in the storage
-				isPersistenceOk = persistEventBatch(logger, partitionedEvents);
 			} else {
 				isPersistenceOk = false;
+				failedStage = PipelineStage.EVENT_PARSE.getTag();
 				errorCause = String.format("[ALERT][VerifyKOToTS] AppException - Error processing events, lengths do not match: [events: %d - properties: %d]", events.size(), properties.length);
 			}
 		} catch (BlobStorageUploadException e) {
 			isPersistenceOk = false;
-			errorCause = "[ALERT][VerifyKOToTS] Persistence Exception - Could not save event body of " + rowKey + " on Azure Blob Storage, error: " + e;
+			failedStage = PipelineStage.BLOB_UPLOAD.getTag();
+			errorCause = "[ALERT][VerifyKOToTS] Persistence Exception - Could not save event body of " + e.getFileName() + " on Azure Blob Storage, error: " + e;
 		} catch (IllegalArgumentException e) {
 			isPersistenceOk = false;
+			failedStage = PipelineStage.EVENT_PARSE.getTag();
 			errorCause = "[ALERT][VerifyKOToTS] AppException - Illegal argument exception on table storage nodo-verify-ko-events msg ingestion at " + LocalDateTime.now() + " : " + e;
 		} catch (IllegalStateException e) {
 			isPersistenceOk = false;
+			failedStage = PipelineStage.EVENT_PARSE.getTag();
 			errorCause = "[ALERT][VerifyKOToTS] AppException - Missing argument exception on nodo-verify-ko-events msg ingestion at " + LocalDateTime.now() + " : " + e;
 		} catch (Exception e) {
 			isPersistenceOk = false;
+			failedStage = "unknown";
 			errorCause =  "[ALERT][VerifyKOToTS] AppException - Generic exception on table storage nodo-verify-ko-events msg ingestion at " + LocalDateTime.now() + " : " + e.getMessage();
 		}
 
 		if (!isPersistenceOk) {
 			String finalErrorCause = errorCause;
 			logger.log(Level.SEVERE, () -> finalErrorCause);
+			if (retryIndex == MAX_RETRY_COUNT) {
+				spoolDeadLetter(logger, context, events, properties, retryIndex, failedStage, errorCause);
+			}
 			throw new AppException(errorCause);
 		}
     }
 
-	private static String extractTraceForEventsToPersist(Map<String, List<TableTransactionAction>> eventsToPersist) {
-		return Arrays.toString(eventsToPersist.values().stream()
-				.map(tableTransactionActions -> Arrays.toString(tableTransactionActions.stream()
-						.map(transaction -> {
-							TableEntity event = transaction.getEntity();
-							String partitionKey = event.getPartitionKey();
-							String rowKey = event.getRowKey();
-							Map<String, Object> props = event.getProperties();
-							Long eventTimestamp = getEventField(props, Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD, Long.class, -1L);
-							return String.format("{PartitionKey: %s, RowKey: %s, EventTimestamp: %d}", partitionKey, rowKey, eventTimestamp);
-						})
-						.toArray()))
-				.toArray());
-	}
-
-	private String fixDateTime(String faultBeanTimestamp) {
-		int dotIndex = faultBeanTimestamp.indexOf('.');
-		if (dotIndex != -1) {
-			int fractionLength = faultBeanTimestamp.length() - dotIndex - 1;
-			faultBeanTimestamp = fractionLength < 6 ? String.format("%s%s", faultBeanTimestamp, "0".repeat(6 - fractionLength)) : faultBeanTimestamp;
-		}
-		else {
-			faultBeanTimestamp = String.format("%s.000000", faultBeanTimestamp);
-		}
-
-		return faultBeanTimestamp;
-	}
-
-	@SuppressWarnings({"rawtypes"})
-	private static <T> T getEventField(Map<String, Object> event, String name, Class<T> clazz, T defaultValue) {
-		T field = null;
-		List<String> splitPath = List.of(name.split("\\."));
-		Map eventSubset = event;
-		Iterator<String> it = splitPath.listIterator();
-		while(it.hasNext()) {
-			Object retrievedEventField = eventSubset.get(it.next());
-			if (!it.hasNext()) {
-				field = clazz.cast(retrievedEventField);
-			} else {
-				eventSubset = (Map) retrievedEventField;
-				if (eventSubset == null) {
-					throw new IllegalArgumentException("The field [" + name + "] does not exists in the passed event.");
-				}
+	/**
+	 * Persist a batch of events with the configured processing engine.
+	 * On retries the events already persisted by a previous attempt are skipped, so a batch can be ingested many times.
+	 *
+	 * @return true if all the events are saved on Table Storage
+	 */
+	boolean ingest(Logger logger, ExecutionContext context, List<String> events, Map<String, Object>[] properties, int retryIndex, boolean isRetry) throws IOException, BlobStorageUploadException {
+		if (processingEngine == ProcessingEngine.REACTIVE) {
+			return processEventsReactively(logger, context, events, properties, retryIndex, isRetry);
+		}
+		return processEvents(logger, context, events, properties, retryIndex, isRetry);
+	}
+
+	private void spoolDeadLetter(Logger logger, ExecutionContext context, List<String> events, Map<String, Object>[] properties, int retryIndex, String failedStage, String errorCause) {
+		if (deadLetterSink == null) {
+			return;
+		}
+		Instant failedAt = Instant.now();
+		String invocationId = Optional.ofNullable(context.getInvocationId()).orElseGet(() -> UUID.randomUUID().toString());
+		DeadLetterEntry entry = DeadLetterEntry.builder()
+				// the zero padded time keeps the ids ordered by failure time
+				.id(String.format("%013d_%s", failedAt.toEpochMilli(), invocationId))
+				.invocationId(invocationId)
+				.retryIndex(retryIndex)
+				.stage(failedStage)
+				.error(errorCause)
+				.failedAt(failedAt.toString())
+				.events(events)
+				.properties(properties != null ? Arrays.asList(properties) : null)
+				.build();
+		try {
+			deadLetterSink.spool(entry);
+			logger.log(Level.WARNING, () -> String.format("[ALERT][DEAD LETTER][VerifyKOToTS] Spooled [%d] events that exhausted the retries: InvocationId [%s], DeadLetter [%s], Stage [%s]", events.size(), context.getInvocationId(), entry.getId(), failedStage));
+		} catch (Exception e) {
+			logger.log(Level.SEVERE, e, () -> String.format("[ALERT][DEAD LETTER][VerifyKOToTS] Could not spool the events that exhausted the retries: InvocationId [%s], error: %s", context.getInvocationId(), e));
+		}
+	}
+
+	/**
+	 * Transform an event and its Event Hub properties in the entity to be saved in Table Storage.
+	 * No I/O is performed: the reference to the body stored in Blob Storage is added later.
+	 */
+	EventToPersist toEventToPersist(String eventInStringForm, Map<String, Object> eventProperties) throws IOException {
+		// only the needed fields are extracted from the event, in a single streaming pass
+		long parseStart = System.nanoTime();
+		final EventFieldExtractor.ExtractedFields event = EVENT_FIELD_EXTRACTOR.extract(eventInStringForm);
+		PIPELINE_METRICS.recordSuccess(PipelineStage.EVENT_PARSE, parseStart);
+
+		final Map<String, Object> eventToBeStored = new HashMap<>();
+
+		// update event with the required parameters and other needed fields, only the allowed properties are saved
+		eventProperties.forEach((property, value) -> {
+			String name = replaceDashWithUppercase(property);
+			Object projectedValue = PROPERTY_PROJECTION.isAllowed(name) ? PROPERTY_PROJECTION.project(value) : null;
+			if (projectedValue != null) {
+				eventToBeStored.put(name, projectedValue);
 			}
+		});
+
+		String faultBeanTimestamp = event.get(Constants.FAULTBEAN_TIMESTAMP_EVENT_FIELD);
+		if (faultBeanTimestamp == null || faultBeanTimestamp.contains("ERROR")) {
+			throw new IllegalStateException("Missing " + Constants.FAULTBEAN_EVENT_FIELD + " or " + Constants.FAULTBEAN_TIMESTAMP_EVENT_FIELD);
+		}
+
+		// sometimes faultBeanTimestamp has less than 6 digits regarding microseconds, the codec handles from 0 to 6 digits
+		long normalizationStart = System.nanoTime();
+		FaultBeanTimestampCodec.ParsedTimestamp parsedTimestamp = FaultBeanTimestampCodec.parse(faultBeanTimestamp);
+		PIPELINE_METRICS.recordSuccess(PipelineStage.TIMESTAMP_NORMALIZATION, normalizationStart);
+		LocalDateTime dateTime = parsedTimestamp.toLocalDateTime();
+		long timestamp = parsedTimestamp.getEpochSecond();
+
+		// inserting the identification columns on event saved in Table Storage
+		String rowKey = generateRowKey(event, String.valueOf(timestamp));
+		eventToBeStored.put(Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD, rowKey);
+
+		// inserting the additional columns on event saved in Table Storage
+		eventToBeStored.put(Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD, timestamp);
+		eventToBeStored.put(Constants.DATE_TIME_EVENT_FIELD, dateTime);
+		eventToBeStored.put(Constants.NOTICE_NUMBER_TABLESTORAGE_EVENT_FIELD, event.getField(Constants.NOTICE_NUMBER_EVENT_FIELD, Constants.NA));
+		eventToBeStored.put(Constants.ID_PA_TABLESTORAGE_EVENT_FIELD, event.getField(Constants.ID_PA_EVENT_FIELD, Constants.NA));
+		eventToBeStored.put(Constants.ID_PSP_TABLESTORAGE_EVENT_FIELD, event.getField(Constants.ID_PSP_EVENT_FIELD, Constants.NA));
+		eventToBeStored.put(Constants.ID_STATION_TABLESTORAGE_EVENT_FIELD, event.getField(Constants.ID_STATION_EVENT_FIELD, Constants.NA));
+		eventToBeStored.put(Constants.ID_CHANNEL_TABLESTORAGE_EVENT_FIELD, event.getField(Constants.ID_CHANNEL_EVENT_FIELD, Constants.NA));
+		if (KO_ROLLUP != null) {
+			eventToBeStored.put(Constants.FAULT_CODE_TABLESTORAGE_EVENT_FIELD, event.getField(Constants.FAULTBEAN_FAULT_CODE_EVENT_FIELD, Constants.NA));
+		}
+
+		// the partition starts with the day of the event, eventually followed by a suffix defined by the configured strategy
+		eventToBeStored.put(Constants.PARTITION_KEY_TABLESTORAGE_EVENT_FIELD, Constants.PARTITION_KEY_STRATEGY.getPartitionKey(dateTime, eventToBeStored, Constants.PARTITION_KEY_BUCKETS));
+
+		return EventToPersist.builder().rowKey(rowKey).body(eventInStringForm).entity(eventToBeStored).build();
+	}
+
+	String replaceDashWithUppercase(String input) {
+		return PROPERTY_NAME_NORMALIZER.normalize(input);
+	}
+
+	private boolean processEvents(Logger logger, ExecutionContext context, List<String> events, Map<String, Object>[] properties, int retryIndex, boolean isRetry) throws IOException, BlobStorageUploadException {
+		List<EventToPersist> eventsToPersist = new ArrayList<>(events.size());
+		for (int index = 0; index < properties.length; index++) {
+			eventsToPersist.add(toEventToPersist(events.get(index), properties[index]));
 		}
-		return field == null ? defaultValue : field;
+		DuplicateEventFilter duplicateFilter = newDuplicateFilter(isRetry);
+		eventsToPersist = eventsToPersist.stream()
+				.filter(eventToPersist -> duplicateFilter.accept(eventToPersist.getRowKey()))
+				.collect(Collectors.toList());
+		reportDuplicates(logger, duplicateFilter, events.size());
+		if (isRetry) {
+			eventsToPersist = excludeAlreadyPersistedEvents(logger, eventsToPersist);
+		}
+
+		// store all the event bodies in Blob Storage before starting with the Table Storage persistence
+		List<ParallelTaskRunner.TaskFailure<EventToPersist>> uploadFailures = storeBodiesInBlob(logger, eventsToPersist, isRetry);
+		Set<EventToPersist> failedUploads = Collections.newSetFromMap(new IdentityHashMap<>());
+		uploadFailures.forEach(failure -> failedUploads.add(failure.getItem()));
+
+		// the events whose body could not be stored are left to the next retry, the others are persisted anyway
+		List<EventToPersist> storedEvents = eventsToPersist.stream()
+				.filter(eventToPersist -> !failedUploads.contains(eventToPersist))
+				.collect(Collectors.toList());
+
+		// the events whose lookup index rows could not be saved are left to the next retry as well
+		Set<String> unindexedRowKeys = persistIndexEntries(logger, storedEvents);
+		Map<String, List<TableTransactionAction>> partitionedEvents = partitionEvents(logger, context, retryIndex, excludeUnindexedEvents(storedEvents, unindexedRowKeys));
+
+		// save all events in the retrieved batch in the storage, counting the saved ones
+		KoCounterRollup.Counts koCounts = KO_ROLLUP != null ? KO_ROLLUP.newCounts() : null;
+		boolean isPersistenceOk = persistEventBatch(logger, partitionedEvents, koCounts) && unindexedRowKeys.isEmpty();
+		mergeKoCounts(logger, koCounts);
+		throwFirstUploadFailure(uploadFailures);
+		return isPersistenceOk;
 	}
 
-	private String replaceDashWithUppercase(String input) {
-		if (!input.contains("-")){
-			return input;
+	private boolean processEventsReactively(Logger logger, ExecutionContext context, List<String> events, Map<String, Object>[] properties, int retryIndex, boolean isRetry) throws IOException, BlobStorageUploadException {
+		TableAsyncClient tableClient = getTableAsyncClient();
+		Map<String, TableAsyncClient> indexTableClients = new HashMap<>();
+		SECONDARY_INDEXES.forEach(index -> indexTableClients.put(index.getTableName(), STORAGE_CLIENTS.getTableAsyncClient(index.getTableName())));
+		List<ParallelTaskRunner.TaskFailure<EventToPersist>> uploadFailures = Collections.synchronizedList(new ArrayList<>());
+		KoCounterRollup.Counts koCounts = KO_ROLLUP != null ? KO_ROLLUP.newCounts() : null;
+		DuplicateEventFilter duplicateFilter = newDuplicateFilter(isRetry);
+
+		// the events are parsed one by one and their bodies are uploaded as soon as they are parsed
+		Flux<EventToPersist> parsedEvents = Flux.range(0, events.size())
+				.map(index -> {
+					try {
+						return toEventToPersist(events.get(index), properties[index]);
+					} catch (IOException e) {
+						throw Exceptions.propagate(e);
+					}
+				})
+				.filter(eventToPersist -> duplicateFilter.accept(eventToPersist.getRowKey()));
+		if (isRetry) {
+			parsedEvents = parsedEvents.collectList()
+					.flatMapIterable(eventsToPersist -> excludeAlreadyPersistedEvents(logger, eventsToPersist));
+		}
+
+		Mono<Boolean> persistence = storeBodiesInBlobReactively(parsedEvents, isRetry, uploadFailures)
+				.collectList()
+				.flatMap(storedEvents -> persistIndexEntriesReactively(logger, indexTableClients, storedEvents)
+						.flatMap(unindexedRowKeys -> persistEventBatchReactively(logger, tableClient, partitionEvents(logger, context, retryIndex, excludeUnindexedEvents(storedEvents, unindexedRowKeys)), koCounts)
+								.map(isPersisted -> isPersisted && unindexedRowKeys.isEmpty())));
+		Boolean isPersistenceOk;
+		try {
+			isPersistenceOk = persistence.block();
+		} catch (RuntimeException e) {
+			Throwable cause = Exceptions.unwrap(e);
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw e;
 		}
-		Matcher matcher = Constants.REPLACE_DASH_PATTERN.matcher(input);
-		StringBuilder builder = new StringBuilder();
-		while (matcher.find()) {
-			matcher.appendReplacement(builder, matcher.group(1).toUpperCase());
+
+		reportDuplicates(logger, duplicateFilter, events.size());
+		mergeKoCounts(logger, koCounts);
+		logUploadFailures(logger, uploadFailures);
+		throwFirstUploadFailure(uploadFailures);
+		return Boolean.TRUE.equals(isPersistenceOk);
+	}
+
+	private Map<String, List<TableTransactionAction>> partitionEvents(Logger logger, ExecutionContext context, int retryIndex, List<EventToPersist> storedEvents) {
+		Map<String, List<TableTransactionAction>> partitionedEvents = new HashMap<>();
+		storedEvents.forEach(eventToPersist -> addToBatch(partitionedEvents, eventToPersist.getEntity()));
+		logger.log(Level.INFO, () -> String.format("Performing event ingestion: InvocationId [%s], Retry Attempt [%d], Events: %s", context.getInvocationId(), retryIndex, EVENT_TRACE.summarize(partitionedEvents)));
+		// the per-event detail is built only if FINE is enabled, or always logged on the sampled invocations
+		Level detailLevel = EVENT_TRACE.isSampled() ? Level.INFO : Level.FINE;
+		logger.log(detailLevel, () -> String.format("Event ingestion detail: InvocationId [%s], Events: %s", context.getInvocationId(), EVENT_TRACE.detail(partitionedEvents)));
+		return partitionedEvents;
+	}
+
+	private static void throwFirstUploadFailure(List<ParallelTaskRunner.TaskFailure<EventToPersist>> uploadFailures) throws BlobStorageUploadException {
+		if (!uploadFailures.isEmpty()) {
+			ParallelTaskRunner.TaskFailure<EventToPersist> firstFailure = uploadFailures.get(0);
+			throw firstFailure.getCause() instanceof BlobStorageUploadException ? (BlobStorageUploadException) firstFailure.getCause() : new BlobStorageUploadException(firstFailure.getItem().getRowKey(), firstFailure.getCause());
 		}
-		matcher.appendTail(builder);
-		return builder.toString();
 	}
 
 	public static TableServiceClient getTableServiceClient(){
-		if (tableServiceClient == null) {
-			tableServiceClient = new TableServiceClientBuilder().connectionString(System.getenv("TABLE_STORAGE_CONN_STRING")).buildClient();
-			tableServiceClient.createTableIfNotExists(Constants.TABLE_NAME);
-		}
-		return tableServiceClient;
+		return STORAGE_CLIENTS.getTableServiceClient();
 	}
 
 	public static BlobContainerClient getBlobContainerClient(){
-		if (blobContainerClient == null) {
-			BlobServiceClient blobServiceClient = new BlobServiceClientBuilder().connectionString(System.getenv("BLOB_STORAGE_CONN_STRING")).buildClient();
-			blobContainerClient = blobServiceClient.createBlobContainerIfNotExists(Constants.BLOB_NAME);
-		}
-		return blobContainerClient;
+		return STORAGE_CLIENTS.getBlobContainerClient();
+	}
+
+	public static TableAsyncClient getTableAsyncClient(){
+		return STORAGE_CLIENTS.getTableAsyncClient();
 	}
 
-	private void addToBatch(Map<String,List<TableTransactionAction>> partitionEvents, Map<String, Object> event) {
+	public static BlobContainerAsyncClient getBlobContainerAsyncClient(){
+		return STORAGE_CLIENTS.getBlobContainerAsyncClient();
+	}
+
+	public static TableAsyncClient getReadOnlyTableAsyncClient(){
+		return STORAGE_CLIENTS.getReadOnlyTableAsyncClient();
+	}
+
+	public static BlobContainerAsyncClient getReadOnlyBlobContainerAsyncClient(){
+		return STORAGE_CLIENTS.getReadOnlyBlobContainerAsyncClient();
+	}
+
+	void addToBatch(Map<String,List<TableTransactionAction>> partitionEvents, Map<String, Object> event) {
 		if (event.get(Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD) != null) {
 			TableEntity entity = new TableEntity((String) event.get(Constants.PARTITION_KEY_TABLESTORAGE_EVENT_FIELD), (String) event.get(Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD));
 			entity.setProperties(event);
@@ -234,47 +483,469 @@ public class NodoVerifyKOEventToTableStorage {
 		}
 	}
 
-	private String storeBodyInBlobAndGetReference(String eventBody, String fileName) throws BlobStorageUploadException {
-		String blobBodyReference = null;
+	private static DuplicateEventFilter newDuplicateFilter(boolean isRetry) {
+		// on retries the events persisted by a previous attempt are skipped by excludeAlreadyPersistedEvents
+		return new DuplicateEventFilter(Constants.DUPLICATE_SUPPRESSION_ENABLED && !isRetry ? COMPLETION_REGISTRY : null);
+	}
+
+	private static void reportDuplicates(Logger logger, DuplicateEventFilter duplicateFilter, int totalEvents) {
+		int duplicates = duplicateFilter.getDuplicates();
+		if (duplicates > 0) {
+			PIPELINE_METRICS.recordEvents("duplicate", duplicates);
+			logger.log(Level.INFO, () -> String.format("Skipping [%d/%d] duplicate events, repeated in the batch or already persisted by a recent invocation", duplicates, totalEvents));
+		}
+	}
+
+	private List<EventToPersist> excludeAlreadyPersistedEvents(Logger logger, List<EventToPersist> eventsToPersist) {
+		List<EventToPersist> notPersistedEvents = eventsToPersist.stream()
+				.filter(eventToPersist -> !COMPLETION_REGISTRY.isPersisted(eventToPersist.getRowKey()))
+				.collect(Collectors.toCollection(ArrayList::new));
+		if (Constants.RETRY_REMOTE_CHECK_ENABLED && !notPersistedEvents.isEmpty()) {
+			Set<String> persistedRowKeys = findPersistedRowKeys(logger, notPersistedEvents);
+			persistedRowKeys.forEach(COMPLETION_REGISTRY::markPersisted);
+			notPersistedEvents.removeIf(eventToPersist -> persistedRowKeys.contains(eventToPersist.getRowKey()));
+		}
+		int skippedEvents = eventsToPersist.size() - notPersistedEvents.size();
+		PIPELINE_METRICS.recordEvents("skipped", skippedEvents);
+		logger.log(Level.INFO, () -> String.format("Skipping [%d/%d] events already persisted by a previous attempt", skippedEvents, eventsToPersist.size()));
+		return notPersistedEvents;
+	}
+
+	private Set<String> findPersistedRowKeys(Logger logger, List<EventToPersist> eventsToPersist) {
+		Set<String> persistedRowKeys = new HashSet<>();
+		try {
+			TableClient tableClient = getTableServiceClient().getTableClient(Constants.TABLE_NAME);
+			Map<String, List<String>> rowKeysByPartition = eventsToPersist.stream().collect(Collectors.groupingBy(
+					eventToPersist -> (String) eventToPersist.getEntity().get(Constants.PARTITION_KEY_TABLESTORAGE_EVENT_FIELD),
+					Collectors.mapping(EventToPersist::getRowKey, Collectors.toList())));
+			for (Map.Entry<String, List<String>> partition : rowKeysByPartition.entrySet()) {
+				List<String> rowKeys = partition.getValue();
+				for (int from = 0; from < rowKeys.size(); from += Constants.RETRY_REMOTE_CHECK_MAX_ROW_KEYS_PER_QUERY) {
+					String rowKeysFilter = rowKeys.subList(from, Math.min(rowKeys.size(), from + Constants.RETRY_REMOTE_CHECK_MAX_ROW_KEYS_PER_QUERY)).stream()
+							.map(rowKey -> String.format("RowKey eq '%s'", rowKey.replace("'", "''")))
+							.collect(Collectors.joining(" or "));
+					ListEntitiesOptions options = new ListEntitiesOptions()
+							.setFilter(String.format("PartitionKey eq '%s' and (%s)", partition.getKey().replace("'", "''"), rowKeysFilter))
+							.setSelect(List.of(Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD));
+					tableClient.listEntities(options, null, null).forEach(entity -> persistedRowKeys.add(entity.getRowKey()));
+				}
+			}
+		} catch (Exception e) {
+			logger.log(Level.WARNING, () -> "[VerifyKOToTS] Could not check the events already persisted on Azure Table Storage, all the events will be processed again: " + e.getMessage());
+		}
+		return persistedRowKeys;
+	}
+
+	private List<ParallelTaskRunner.TaskFailure<EventToPersist>> storeBodiesInBlob(Logger logger, List<EventToPersist> eventsToPersist, boolean isRetry) throws BlobStorageUploadException {
+		// on retries, the bodies already stored by a previous attempt are not uploaded again
+		List<EventToPersist> eventsToUpload = eventsToPersist.stream()
+				.filter(eventToPersist -> !(isRetry && reuseStoredBody(eventToPersist)))
+				.collect(Collectors.toList());
+		if (eventsToUpload.isEmpty()) {
+			return List.of();
+		}
+		// the client is resolved on the invocation thread, so that the upload tasks only share an already initialized client
+		BlobContainerClient containerClient;
+		try {
+			containerClient = getBlobContainerClient();
+		} catch (Exception e) {
+			throw new BlobStorageUploadException(eventsToUpload.get(0).getRowKey(), e);
+		}
+		List<ParallelTaskRunner.TaskFailure<EventToPersist>> failures;
+		if (Constants.BLOB_BODY_LAYOUT == BlobBodyLayout.SEGMENT) {
+			failures = storeBodiesInSegments(containerClient, eventsToUpload);
+		} else {
+			failures = BLOB_UPLOAD_RUNNER.runAll(eventsToUpload, eventToPersist -> {
+				String blobBodyReference = storeBodyInBlobAndGetReference(containerClient, eventToPersist.getBody(), eventToPersist.getRowKey());
+				markBodyStored(eventToPersist, blobBodyReference);
+			});
+		}
+		logUploadFailures(logger, failures);
+		return failures;
+	}
+
+	private Flux<EventToPersist> storeBodiesInBlobReactively(Flux<EventToPersist> eventsToPersist, boolean isRetry, List<ParallelTaskRunner.TaskFailure<EventToPersist>> uploadFailures) {
+		// the client is resolved once, on the first upload, and shared by all the others
+		Mono<BlobContainerAsyncClient> containerClient = Mono.fromCallable(NodoVerifyKOEventToTableStorage::getBlobContainerAsyncClient).cache();
+		if (Constants.BLOB_BODY_LAYOUT == BlobBodyLayout.SEGMENT) {
+			return eventsToPersist.collectList().flatMapMany(events -> {
+				Map<Boolean, List<EventToPersist>> reusedEvents = events.stream().collect(Collectors.partitioningBy(eventToPersist -> isRetry && reuseStoredBody(eventToPersist)));
+				List<BodySegmentPacker.Segment<EventToPersist>> segments = SEGMENT_PACKER.pack(reusedEvents.get(false), EventToPersist::getBody, EventToPersist::getRowKey);
+				Flux<EventToPersist> uploadedEvents = Flux.fromIterable(segments)
+						.flatMap(segment -> containerClient
+								.flatMap(client -> uploadBlobReactively(client, prepareSegmentUpload(segment))
+										.then(Mono.fromRunnable(() -> markSegmentStored(client.getAccountName(), segment))))
+								.thenMany(Flux.fromIterable(segment.getEntries()).map(BodySegmentPacker.Entry::getItem))
+								.onErrorResume(e -> {
+									segment.getEntries().forEach(entry -> uploadFailures.add(new ParallelTaskRunner.TaskFailure<>(entry.getItem(), toException(e))));
+									return Flux.empty();
+								}), Constants.BLOB_UPLOAD_PARALLELISM);
+				return Flux.concat(Flux.fromIterable(reusedEvents.get(true)), uploadedEvents);
+			});
+		}
+		return eventsToPersist.flatMap(eventToPersist -> {
+			if (isRetry && reuseStoredBody(eventToPersist)) {
+				return Mono.just(eventToPersist);
+			}
+			return containerClient
+					.flatMap(client -> Mono.fromCallable(() -> prepareBodyUpload(client.getAccountName(), eventToPersist.getBody(), eventToPersist.getRowKey()))
+							.flatMap(upload -> uploadBlobReactively(client, upload)
+									.then(Mono.fromRunnable(() -> markBodyStored(eventToPersist, upload.getBlobBodyReference())))))
+					.thenReturn(eventToPersist)
+					.onErrorResume(e -> {
+						uploadFailures.add(new ParallelTaskRunner.TaskFailure<>(eventToPersist, toException(e)));
+						return Mono.empty();
+					});
+		}, Constants.BLOB_UPLOAD_PARALLELISM);
+	}
+
+	private static boolean reuseStoredBody(EventToPersist eventToPersist) {
+		String blobBodyReference = COMPLETION_REGISTRY.getBlobBodyReference(eventToPersist.getRowKey());
+		if (blobBodyReference != null) {
+			eventToPersist.getEntity().put(Constants.BLOB_BODY_REFERENCE_TABLESTORAGE_EVENT_FIELD, blobBodyReference);
+		}
+		return blobBodyReference != null;
+	}
+
+	private static void markBodyStored(EventToPersist eventToPersist, String blobBodyReference) {
+		eventToPersist.getEntity().put(Constants.BLOB_BODY_REFERENCE_TABLESTORAGE_EVENT_FIELD, blobBodyReference);
+		COMPLETION_REGISTRY.markBlobStored(eventToPersist.getRowKey(), blobBodyReference);
+	}
+
+	private static void logUploadFailures(Logger logger, List<ParallelTaskRunner.TaskFailure<EventToPersist>> failures) {
+		PIPELINE_METRICS.recordEvents("blob_failed", failures.size());
+		failures.forEach(failure -> logger.log(Level.SEVERE, () -> "[ALERT][VerifyKOToTS] Persistence Exception - Could not save event body of " + failure.getItem().getRowKey() + " on Azure Blob Storage, error: " + failure.getCause()));
+	}
+
+	private static Exception toException(Throwable throwable) {
+		return throwable instanceof Exception ? (Exception) throwable : new IllegalStateException(throwable);
+	}
+
+	private List<ParallelTaskRunner.TaskFailure<EventToPersist>> storeBodiesInSegments(BlobContainerClient containerClient, List<EventToPersist> eventsToUpload) {
+		List<BodySegmentPacker.Segment<EventToPersist>> segments = SEGMENT_PACKER.pack(eventsToUpload, EventToPersist::getBody, EventToPersist::getRowKey);
+		List<ParallelTaskRunner.TaskFailure<BodySegmentPacker.Segment<EventToPersist>>> segmentFailures = BLOB_UPLOAD_RUNNER.runAll(segments, segment -> {
+			uploadBlob(containerClient, prepareSegmentUpload(segment));
+			markSegmentStored(containerClient.getAccountName(), segment);
+		});
+		return toEventFailures(segmentFailures);
+	}
+
+	private String storeBodyInBlobAndGetReference(BlobContainerClient containerClient, String eventBody, String fileName) throws BlobStorageUploadException {
+		BlobBodyUpload upload = prepareBodyUpload(containerClient.getAccountName(), eventBody, fileName);
+		uploadBlob(containerClient, upload);
+		return upload.getBlobBodyReference();
+	}
+
+	private void uploadBlob(BlobContainerClient containerClient, BlobBodyUpload upload) throws BlobStorageUploadException {
+		try {
+			// each attempt is measured, so that the throttled ones are counted as failures
+			BLOB_UPLOAD_LIMITER.execute(() -> {
+				long start = System.nanoTime();
+				try {
+					BlobClient blobClient = containerClient.getBlobClient(upload.getFileName());
+					if (upload.getHeaders() == null && upload.getRequestConditions() == null) {
+						blobClient.upload(upload.getPayload(), true);
+					} else {
+						blobClient.uploadWithResponse(toUploadOptions(upload), null, Context.NONE);
+					}
+				} catch (Exception e) {
+					if (isAlreadyStored(upload, e)) {
+						PIPELINE_METRICS.recordEvents("blob_deduplicated", 1);
+						return null;
+					}
+					PIPELINE_METRICS.recordFailure(PipelineStage.BLOB_UPLOAD, e);
+					throw e;
+				}
+				PIPELINE_METRICS.recordSuccess(PipelineStage.BLOB_UPLOAD, start);
+				PIPELINE_METRICS.recordBlobBytes(upload.getPayload().getLength());
+				return null;
+			});
+		} catch (Exception e) {
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
+			}
+			throw new BlobStorageUploadException(upload.getFileName(), e);
+		}
+	}
+
+	static Mono<Void> uploadBlobReactively(BlobContainerAsyncClient containerClient, BlobBodyUpload upload) {
+		// each attempt is measured as in the blocking engine: a body already stored is neither a failure nor an upload
+		Mono<Void> operation = Mono.defer(() -> {
+			long start = System.nanoTime();
+			BlobAsyncClient blobClient = containerClient.getBlobAsyncClient(upload.getFileName());
+			Mono<Void> attempt = upload.getHeaders() == null && upload.getRequestConditions() == null
+					? blobClient.upload(upload.getPayload(), true).then()
+					: blobClient.uploadWithResponse(toUploadOptions(upload)).then();
+			return attempt
+					.doOnSuccess(result -> {
+						PIPELINE_METRICS.recordSuccess(PipelineStage.BLOB_UPLOAD, start);
+						PIPELINE_METRICS.recordBlobBytes(upload.getPayload().getLength());
+					})
+					.onErrorResume(e -> isAlreadyStored(upload, e), e -> Mono.fromRunnable(() -> PIPELINE_METRICS.recordEvents("blob_deduplicated", 1)))
+					.doOnError(e -> PIPELINE_METRICS.recordFailure(PipelineStage.BLOB_UPLOAD, e));
+		});
+		return BLOB_UPLOAD_LIMITER.execute(operation)
+				.onErrorMap(e -> new BlobStorageUploadException(upload.getFileName(), toException(e)));
+	}
+
+	private static BlobBodyUpload prepareBodyUpload(String storageAccount, String eventBody, String fileName) throws BlobStorageUploadException {
 		try {
-			BlobClient blobClient = getBlobContainerClient().getBlobClient(fileName);
-			BinaryData body = BinaryData.fromStream(new ByteArrayInputStream(eventBody.getBytes(StandardCharsets.UTF_8)));
-			blobClient.upload(body, true);
-			blobBodyReference = BlobBodyReference.builder()
-					.storageAccount(getBlobContainerClient().getAccountName())
+			// the body is encoded once and the same bytes are uploaded without further copies
+			byte[] body = eventBody.getBytes(StandardCharsets.UTF_8);
+			BodyCompression compression = Constants.BLOB_BODY_COMPRESSION;
+			BlobBodyReference.BlobBodyReferenceBuilder reference = BlobBodyReference.builder()
+					.storageAccount(storageAccount)
 					.containerName(Constants.BLOB_NAME)
-					.fileName(fileName)
-					.fileLength(body.toString().length())
-					.build().toString();
+					.fileLength(body.length);
+			BlobBodyUpload.BlobBodyUploadBuilder upload = BlobBodyUpload.builder();
+			String blobName = fileName;
+			if (Constants.BLOB_BODY_CONTENT_ADDRESSED) {
+				// a body already stored by a redelivery or a retry is not written again
+				String contentHash = ContentHash.sha256(body);
+				blobName = ContentHash.getBlobName(contentHash, compression);
+				reference.contentHash(contentHash);
+				upload.requestConditions(new BlobRequestConditions().setIfNoneMatch(Constants.ETAG_WILDCARD));
+			}
+			reference.fileName(blobName);
+			upload.fileName(blobName);
+			if (compression == BodyCompression.NONE) {
+				upload.payload(BinaryData.fromBytes(body));
+			} else {
+				// the Content-Encoding lets HTTP readers decompress the body transparently, while SDK readers can rely on the reference
+				byte[] compressedBody = compression.compress(body);
+				upload.payload(BinaryData.fromBytes(compressedBody))
+						.headers(new BlobHttpHeaders()
+								.setContentType("application/json")
+								.setContentEncoding(compression.getContentEncoding()));
+				reference.compression(compression.getContentEncoding())
+						.compressedLength(compressedBody.length);
+			}
+			return upload.blobBodyReference(reference.build().toString()).build();
 		} catch (Exception e) {
-			throw new BlobStorageUploadException(e);
+			throw new BlobStorageUploadException(fileName, e);
+		}
+	}
+
+	private static BlobParallelUploadOptions toUploadOptions(BlobBodyUpload upload) {
+		return new BlobParallelUploadOptions(upload.getPayload())
+				.setHeaders(upload.getHeaders())
+				.setRequestConditions(upload.getRequestConditions());
+	}
+
+	private static boolean isAlreadyStored(BlobBodyUpload upload, Throwable error) {
+		// a conditional upload of a content-addressed blob fails only if the same content is already stored
+		if (upload.getRequestConditions() == null) {
+			return false;
+		}
+		int statusCode = AdaptiveConcurrencyLimiter.getHttpStatusCode(error);
+		return statusCode == 409 || statusCode == 412;
+	}
+
+	private static BlobBodyUpload prepareSegmentUpload(BodySegmentPacker.Segment<?> segment) {
+		// no Content-Encoding is set on segments: each body is compressed on its own and must be read with a ranged read
+		return BlobBodyUpload.builder()
+				.fileName(segment.getName())
+				.payload(BinaryData.fromBytes(segment.getContent()))
+				.headers(new BlobHttpHeaders().setContentType("application/octet-stream"))
+				.build();
+	}
+
+	private static void markSegmentStored(String storageAccount, BodySegmentPacker.Segment<EventToPersist> segment) {
+		for (BodySegmentPacker.Entry<EventToPersist> entry : segment.getEntries()) {
+			EventToPersist eventToPersist = entry.getItem();
+			String blobBodyReference = BlobBodyReference.builder()
+					.storageAccount(storageAccount)
+					.containerName(Constants.BLOB_NAME)
+					.fileName(segment.getName())
+					.fileLength(entry.getOriginalLength())
+					.compression(SEGMENT_PACKER.getCompression().getContentEncoding())
+					.compressedLength(entry.getLength())
+					.offset(entry.getOffset())
+					.length(entry.getLength())
+					.build().toString();
+			markBodyStored(eventToPersist, blobBodyReference);
+		}
+	}
+
+	private static List<ParallelTaskRunner.TaskFailure<EventToPersist>> toEventFailures(List<ParallelTaskRunner.TaskFailure<BodySegmentPacker.Segment<EventToPersist>>> segmentFailures) {
+		// a failed segment makes all its events fail, so that they are stored again on the next retry
+		List<ParallelTaskRunner.TaskFailure<EventToPersist>> failures = new ArrayList<>();
+		for (ParallelTaskRunner.TaskFailure<BodySegmentPacker.Segment<EventToPersist>> segmentFailure : segmentFailures) {
+			segmentFailure.getItem().getEntries().forEach(entry -> failures.add(new ParallelTaskRunner.TaskFailure<>(entry.getItem(), segmentFailure.getCause())));
 		}
-		return blobBodyReference;
+		return failures;
 	}
 
-	private String generateRowKey(Map<String, Object> event, String insertedTimestampValue) {
+	String generateRowKey(EventFieldExtractor.ExtractedFields event, String insertedTimestampValue) {
 		return insertedTimestampValue +
 				"-" +
-				getEventField(event, Constants.ID_EVENT_FIELD, String.class, Constants.NA);
+				event.getField(Constants.ID_EVENT_FIELD, Constants.NA);
 	}
 
-	private boolean persistEventBatch(Logger logger, Map<String, List<TableTransactionAction>> partitionedEvents) {
-		AtomicBoolean isOk = new AtomicBoolean(true);
+	private boolean persistEventBatch(Logger logger, Map<String, List<TableTransactionAction>> partitionedEvents, KoCounterRollup.Counts koCounts) {
 		TableClient tableClient = getTableServiceClient().getTableClient(Constants.TABLE_NAME);
-		AtomicReference<StringJoiner> stringJoiner = new AtomicReference<>(new StringJoiner(","));
-		AtomicReference<String> finalCommaSeparatedString = new AtomicReference<>("");
-		partitionedEvents.forEach((partition, values) -> {
-			try {
-				values.forEach(v -> stringJoiner.get().add(v.getEntity().getRowKey()));
-				finalCommaSeparatedString.set(stringJoiner.toString());
-				tableClient.submitTransaction(values);
-				stringJoiner.set(new StringJoiner(","));
-			} catch (Exception e) {
-				isOk.set(false);
-				logger.log(Level.SEVERE, e, () -> "[ALERT][VerifyKOToTS] Persistence Exception - Could not save " + values.size() + " events (partition [" + partition + "], rowKeys range [" + finalCommaSeparatedString + "]) on Azure Table Storage, error: " + e.getMessage());
+		List<Map.Entry<String, List<TableTransactionAction>>> transactions = planTransactions(partitionedEvents);
+
+		// all the transactions, also the ones related to the same partition, are submitted concurrently
+		List<ParallelTaskRunner.TaskFailure<Map.Entry<String, List<TableTransactionAction>>>> failures = TABLE_TRANSACTION_RUNNER.runAll(transactions, transaction -> {
+			TABLE_TRANSACTION_LIMITER.execute(() -> {
+				long start = System.nanoTime();
+				try {
+					tableClient.submitTransaction(transaction.getValue());
+				} catch (Exception e) {
+					PIPELINE_METRICS.recordFailure(PipelineStage.TABLE_TRANSACTION, e);
+					throw e;
+				}
+				PIPELINE_METRICS.recordSuccess(PipelineStage.TABLE_TRANSACTION, start);
+				return null;
+			});
+			markTransactionPersisted(transaction, koCounts);
+		});
+		return reportTransactionResults(logger, transactions, failures);
+	}
+
+	private Mono<Boolean> persistEventBatchReactively(Logger logger, TableAsyncClient tableClient, Map<String, List<TableTransactionAction>> partitionedEvents, KoCounterRollup.Counts koCounts) {
+		List<Map.Entry<String, List<TableTransactionAction>>> transactions = planTransactions(partitionedEvents);
+		List<ParallelTaskRunner.TaskFailure<Map.Entry<String, List<TableTransactionAction>>>> failures = Collections.synchronizedList(new ArrayList<>());
+
+		return Flux.fromIterable(transactions)
+				.flatMap(transaction -> TABLE_TRANSACTION_LIMITER.execute(PIPELINE_METRICS.record(PipelineStage.TABLE_TRANSACTION, tableClient.submitTransaction(transaction.getValue())))
+						.doOnSuccess(result -> markTransactionPersisted(transaction, koCounts))
+						.then()
+						.onErrorResume(e -> {
+							failures.add(new ParallelTaskRunner.TaskFailure<>(transaction, toException(e)));
+							return Mono.empty();
+						}), Constants.TABLE_TRANSACTION_PARALLELISM)
+				.then(Mono.fromCallable(() -> reportTransactionResults(logger, transactions, failures)));
+	}
+
+	/**
+	 * Save the lookup index rows of the events before the events themselves, so that every saved event can be found
+	 * through its indexes. The index rows are idempotent, so the ones of a partially indexed event are saved again on retry.
+	 *
+	 * @return the RowKeys of the events whose index rows could not be saved
+	 */
+	private Set<String> persistIndexEntries(Logger logger, List<EventToPersist> storedEvents) {
+		if (SECONDARY_INDEXES.isEmpty() || storedEvents.isEmpty()) {
+			return Set.of();
+		}
+		Map<String, TableClient> indexTableClients = new HashMap<>();
+		SECONDARY_INDEXES.forEach(index -> indexTableClients.put(index.getTableName(), STORAGE_CLIENTS.getTableClient(index.getTableName())));
+		List<Map.Entry<String, Map.Entry<String, List<TableTransactionAction>>>> transactions = planIndexTransactions(storedEvents);
+
+		List<ParallelTaskRunner.TaskFailure<Map.Entry<String, Map.Entry<String, List<TableTransactionAction>>>>> failures = TABLE_TRANSACTION_RUNNER.runAll(transactions, transaction ->
+			TABLE_TRANSACTION_LIMITER.execute(() -> {
+				long start = System.nanoTime();
+				try {
+					indexTableClients.get(transaction.getKey()).submitTransaction(transaction.getValue().getValue());
+				} catch (Exception e) {
+					PIPELINE_METRICS.recordFailure(PipelineStage.INDEX_TRANSACTION, e);
+					throw e;
+				}
+				PIPELINE_METRICS.recordSuccess(PipelineStage.INDEX_TRANSACTION, start);
+				return null;
+			}));
+		return reportIndexResults(logger, failures);
+	}
+
+	private Mono<Set<String>> persistIndexEntriesReactively(Logger logger, Map<String, TableAsyncClient> indexTableClients, List<EventToPersist> storedEvents) {
+		if (SECONDARY_INDEXES.isEmpty() || storedEvents.isEmpty()) {
+			return Mono.just(Set.of());
+		}
+		List<Map.Entry<String, Map.Entry<String, List<TableTransactionAction>>>> transactions = planIndexTransactions(storedEvents);
+		List<ParallelTaskRunner.TaskFailure<Map.Entry<String, Map.Entry<String, List<TableTransactionAction>>>>> failures = Collections.synchronizedList(new ArrayList<>());
+
+		return Flux.fromIterable(transactions)
+				.flatMap(transaction -> TABLE_TRANSACTION_LIMITER.execute(PIPELINE_METRICS.record(PipelineStage.INDEX_TRANSACTION, indexTableClients.get(transaction.getKey()).submitTransaction(transaction.getValue().getValue())))
+						.then()
+						.onErrorResume(e -> {
+							failures.add(new ParallelTaskRunner.TaskFailure<>(transaction, toException(e)));
+							return Mono.empty();
+						}), Constants.TABLE_TRANSACTION_PARALLELISM)
+				.then(Mono.fromCallable(() -> reportIndexResults(logger, failures)));
+	}
+
+	/**
+	 * @return the transactions of all the index tables, each one paired with the name of its table
+	 */
+	private static List<Map.Entry<String, Map.Entry<String, List<TableTransactionAction>>>> planIndexTransactions(List<EventToPersist> storedEvents) {
+		List<Map<String, Object>> entities = storedEvents.stream().map(EventToPersist::getEntity).collect(Collectors.toList());
+		List<Map.Entry<String, Map.Entry<String, List<TableTransactionAction>>>> transactions = new ArrayList<>();
+		SECONDARY_INDEXES.forEach(index -> planTransactions(index.partition(entities)).forEach(transaction -> transactions.add(Map.entry(index.getTableName(), transaction))));
+		return transactions;
+	}
+
+	private static Set<String> reportIndexResults(Logger logger, List<ParallelTaskRunner.TaskFailure<Map.Entry<String, Map.Entry<String, List<TableTransactionAction>>>>> failures) {
+		Set<String> unindexedRowKeys = new HashSet<>();
+		failures.forEach(failure -> {
+			String table = failure.getItem().getKey();
+			String partition = failure.getItem().getValue().getKey();
+			List<TableTransactionAction> values = failure.getItem().getValue().getValue();
+			values.forEach(value -> unindexedRowKeys.add(value.getEntity().getRowKey()));
+			Exception e = failure.getCause();
+			logger.log(Level.SEVERE, e, () -> "[ALERT][VerifyKOToTS] Persistence Exception - Could not save " + values.size() + " index rows (table [" + table + "], partition [" + partition + "]) on Azure Table Storage, error: " + e.getMessage());
+		});
+		PIPELINE_METRICS.recordEvents("index_failed", unindexedRowKeys.size());
+		return unindexedRowKeys;
+	}
+
+	private static List<EventToPersist> excludeUnindexedEvents(List<EventToPersist> storedEvents, Set<String> unindexedRowKeys) {
+		if (unindexedRowKeys.isEmpty()) {
+			return storedEvents;
+		}
+		return storedEvents.stream()
+				.filter(eventToPersist -> !unindexedRowKeys.contains(eventToPersist.getRowKey()))
+				.collect(Collectors.toList());
+	}
+
+	private static List<Map.Entry<String, List<TableTransactionAction>>> planTransactions(Map<String, List<TableTransactionAction>> partitionedEvents) {
+		// each partition is split in transactions that respect the action count and payload size limits
+		List<Map.Entry<String, List<TableTransactionAction>>> transactions = new ArrayList<>();
+		partitionedEvents.forEach((partition, actions) -> TRANSACTION_PLANNER.plan(actions).forEach(transaction -> transactions.add(Map.entry(partition, transaction))));
+		transactions.forEach(transaction -> PIPELINE_METRICS.recordTransactionSize(transaction.getValue().size()));
+		return transactions;
+	}
+
+	private static void markTransactionPersisted(Map.Entry<String, List<TableTransactionAction>> transaction, KoCounterRollup.Counts koCounts) {
+		transaction.getValue().forEach(action -> COMPLETION_REGISTRY.markPersisted(action.getEntity().getRowKey()));
+		if (koCounts != null) {
+			transaction.getValue().forEach(action -> koCounts.add(action.getEntity().getProperties()));
+		}
+	}
+
+	/**
+	 * Merge the KO counters of the events saved by the invocation in the rollup table.
+	 * The counters are best effort: a failed merge is only reported, because the retries skip the events already saved.
+	 */
+	private static void mergeKoCounts(Logger logger, KoCounterRollup.Counts koCounts) {
+		if (koCounts == null || koCounts.getEvents() == 0) {
+			return;
+		}
+		try {
+			KO_ROLLUP.merge(STORAGE_CLIENTS.getTableClient(Constants.KO_ROLLUP_TABLE_NAME), koCounts, TABLE_TRANSACTION_LIMITER);
+		} catch (Exception e) {
+			if (e instanceof InterruptedException) {
+				Thread.currentThread().interrupt();
 			}
+			PIPELINE_METRICS.recordEvents("rollup_failed", koCounts.getEvents());
+			logger.log(Level.WARNING, e, () -> "[VerifyKOToTS] Could not merge the KO counters of " + koCounts.getEvents() + " events on Azure Table Storage, error: " + e.getMessage());
+		}
+	}
+
+	private static boolean reportTransactionResults(Logger logger, List<Map.Entry<String, List<TableTransactionAction>>> transactions, List<ParallelTaskRunner.TaskFailure<Map.Entry<String, List<TableTransactionAction>>>> failures) {
+		failures.forEach(failure -> {
+			String partition = failure.getItem().getKey();
+			List<TableTransactionAction> values = failure.getItem().getValue();
+			String rowKeys = values.stream().map(value -> value.getEntity().getRowKey()).collect(Collectors.joining(","));
+			Exception e = failure.getCause();
+			logger.log(Level.SEVERE, e, () -> "[ALERT][VerifyKOToTS] Persistence Exception - Could not save " + values.size() + " events (partition [" + partition + "], rowKeys range [" + rowKeys + "]) on Azure Table Storage, error: " + e.getMessage());
 		});
-		logger.log(Level.FINE, () -> "Done processing events");
-		return isOk.get();
+
+		int failedEvents = failures.stream().mapToInt(failure -> failure.getItem().getValue().size()).sum();
+		int totalEvents = transactions.stream().mapToInt(transaction -> transaction.getValue().size()).sum();
+		PIPELINE_METRICS.recordEvents("persisted", totalEvents - failedEvents);
+		PIPELINE_METRICS.recordEvents("table_failed", failedEvents);
+		logger.log(Level.FINE, () -> String.format("Done processing events: [%d/%d] transactions and [%d/%d] events saved on Azure Table Storage", transactions.size() - failures.size(), transactions.size(), totalEvents - failedEvents, totalEvents));
+		return failures.isEmpty();
 	}
 }
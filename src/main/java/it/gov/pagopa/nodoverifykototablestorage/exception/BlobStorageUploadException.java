@@ -2,7 +2,18 @@ package it.gov.pagopa.nodoverifykototablestorage.exception;
 
 public class BlobStorageUploadException extends Exception {
 
+    private final String fileName;
+
     public BlobStorageUploadException(Exception e) {
+        this(null, e);
+    }
+
+    public BlobStorageUploadException(String fileName, Exception e) {
         super(e);
+        this.fileName = fileName;
+    }
+
+    public String getFileName() {
+        return fileName;
     }
 }
@@ -10,10 +10,29 @@ public class BlobBodyReference {
   private String containerName;
   private String fileName;
   private long fileLength;
+  // lowercase hex SHA-256 of the original body, set only when the blob is named by its content
+  private String contentHash;
+  // content encoding of the stored blob (i.e. gzip), null if the body is stored uncompressed
+  private String compression;
+  private long compressedLength;
+
+  // position and size in bytes of the body in the blob, set only when the body is packed in a segment blob
+  private Long offset;
+  private long length;
 
   @Override
   public String toString() {
-    return String.format("{\"storageAccount\":\"%s\",\"containerName\":\"%s\",\"fileName\":\"%s\",\"fileLength\":%d}",
-            this.storageAccount, this.containerName, this.fileName, this.fileLength);
+    StringBuilder json = new StringBuilder(String.format("{\"storageAccount\":\"%s\",\"containerName\":\"%s\",\"fileName\":\"%s\",\"fileLength\":%d",
+            this.storageAccount, this.containerName, this.fileName, this.fileLength));
+    if (this.contentHash != null) {
+      json.append(String.format(",\"contentHash\":\"%s\"", this.contentHash));
+    }
+    if (this.compression != null) {
+      json.append(String.format(",\"compression\":\"%s\",\"compressedLength\":%d", this.compression, this.compressedLength));
+    }
+    if (this.offset != null) {
+      json.append(String.format(",\"offset\":%d,\"length\":%d", this.offset, this.length));
+    }
+    return json.append('}').toString();
   }
 }
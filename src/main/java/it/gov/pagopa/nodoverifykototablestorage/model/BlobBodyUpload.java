@@ -0,0 +1,23 @@
+package it.gov.pagopa.nodoverifykototablestorage.model;
+
+import com.azure.core.util.BinaryData;
+import com.azure.storage.blob.models.BlobHttpHeaders;
+import com.azure.storage.blob.models.BlobRequestConditions;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A blob ready to be uploaded, shared by the synchronous and the asynchronous Blob Storage clients.
+ */
+@Data
+@Builder
+public class BlobBodyUpload {
+  private String fileName;
+  private BinaryData payload;
+  // headers of the blob, null if the blob is uploaded with the default ones
+  private BlobHttpHeaders headers;
+  // conditions of the upload, null if the blob is overwritten unconditionally
+  private BlobRequestConditions requestConditions;
+  // reference to the uploaded body, null for segments whose references are related to each packed body
+  private String blobBodyReference;
+}
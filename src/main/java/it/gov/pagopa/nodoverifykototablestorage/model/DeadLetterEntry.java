@@ -0,0 +1,30 @@
+package it.gov.pagopa.nodoverifykototablestorage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of events that could not be saved by the last retry, spooled to be replayed later.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterEntry {
+  // unique and ordered by failure time, so that the oldest entries are replayed first
+  private String id;
+  private String invocationId;
+  private int retryIndex;
+  // stage of the pipeline that failed, i.e. blob_upload or table_transaction
+  private String stage;
+  private String error;
+  private String failedAt;
+  private List<String> events;
+  // Event Hub properties of each event, restored as plain JSON values
+  private List<Map<String, Object>> properties;
+}
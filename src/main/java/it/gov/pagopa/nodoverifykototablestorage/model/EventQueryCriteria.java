@@ -0,0 +1,25 @@
+package it.gov.pagopa.nodoverifykototablestorage.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Criteria of a query of the saved events: a time range, on the same clock of the faultBean timestamp,
+ * and optional filters on the identification columns.
+ */
+@Data
+@Builder
+public class EventQueryCriteria {
+  // start of the range, inclusive
+  private LocalDateTime from;
+  // end of the range, exclusive
+  private LocalDateTime to;
+  private String noticeNumber;
+  private String idPA;
+  private String idPsp;
+  private int pageSize;
+  // resolve the body of each event from Blob Storage
+  private boolean includeBody;
+}
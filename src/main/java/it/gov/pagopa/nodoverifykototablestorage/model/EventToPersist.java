@@ -0,0 +1,18 @@
+package it.gov.pagopa.nodoverifykototablestorage.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * An event of the processed batch, carrying both the raw body to be stored in Blob Storage
+ * and the columns of the entity to be stored in Table Storage.
+ */
+@Data
+@Builder
+public class EventToPersist {
+  private String rowKey;
+  private String body;
+  private Map<String, Object> entity;
+}
@@ -0,0 +1,279 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.azure.core.exception.HttpResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent storage operations with an AIMD (additive increase, multiplicative decrease) policy.
+ * A throttling response (HTTP 429 or 503) halves the limit, at most once per backoff window, and the throttled
+ * operation is retried after a jittered exponential backoff. When the operations complete again with a latency close
+ * to the best observed one, the limit grows by one every {@code limit} successful operations, up to the max limit.
+ * The same limiter can be used by blocking callers, that wait for a permit, and by reactive pipelines, that are
+ * subscribed when a permit is free.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double DECREASE_FACTOR = 0.5;
+
+    // an operation slower than twice the best observed latency is a sign of a still loaded service
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    private static final CompletableFuture<Void> GRANTED = CompletableFuture.completedFuture(null);
+
+    private final String name;
+
+    private final int maxLimit;
+
+    private final int maxRetries;
+
+    private final long baseDelayMillis;
+
+    private final long maxDelayMillis;
+
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+    private int limit;
+
+    private int inFlight;
+
+    private int successesSinceIncrease;
+
+    private long baselineLatencyNanos;
+
+    private long lastDecreaseNanos;
+
+    private boolean decreased;
+
+    /**
+     * @param name the name of the limited operation, used as metric tag
+     * @param maxLimit the max number of concurrent operations, also used as initial limit
+     * @param maxRetries the max number of retries of a throttled operation, 0 to never retry
+     * @param baseDelay the backoff before the first retry, doubled on each following retry
+     * @param maxDelay the max backoff between two retries
+     */
+    public AdaptiveConcurrencyLimiter(String name, int maxLimit, int maxRetries, Duration baseDelay, Duration maxDelay) {
+        this.name = name;
+        this.maxLimit = Math.max(1, maxLimit);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelayMillis = Math.max(1, baseDelay.toMillis());
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelay.toMillis());
+        this.limit = this.maxLimit;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Execute the operation once a permit is free, retrying it while it is throttled.
+     * The permit is released during the backoff, so that the other operations can proceed.
+     */
+    public <T> T execute(Callable<T> operation) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            acquire();
+            long start = System.nanoTime();
+            try {
+                T result = operation.call();
+                onSuccess(System.nanoTime() - start);
+                return result;
+            } catch (Exception e) {
+                if (!isThrottling(e)) {
+                    throw e;
+                }
+                onThrottle();
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+            } finally {
+                release();
+            }
+            TimeUnit.MILLISECONDS.sleep(getBackoffMillis(attempt));
+        }
+    }
+
+    /**
+     * Subscribe the operation once a permit is free, resubscribing it while it is throttled.
+     */
+    public <T> Mono<T> execute(Mono<T> operation) {
+        Mono<T> limitedOperation = Mono.usingWhen(
+                acquirePermit(),
+                permit -> Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return operation
+                            .doOnSuccess(result -> onSuccess(System.nanoTime() - start))
+                            .doOnError(error -> {
+                                if (isThrottling(error)) {
+                                    onThrottle();
+                                }
+                            });
+                }),
+                permit -> Mono.fromRunnable(this::release),
+                (permit, error) -> Mono.fromRunnable(this::release),
+                permit -> Mono.fromRunnable(this::release));
+        if (maxRetries == 0) {
+            return limitedOperation;
+        }
+        return limitedOperation.retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(baseDelayMillis))
+                .maxBackoff(Duration.ofMillis(maxDelayMillis))
+                .jitter(0.5)
+                .filter(AdaptiveConcurrencyLimiter::isThrottling)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    /**
+     * @return true if the error, or one of its causes, is a throttling response of the storage service
+     */
+    public static boolean isThrottling(Throwable error) {
+        int statusCode = getHttpStatusCode(error);
+        return statusCode == 429 || statusCode == 503;
+    }
+
+    /**
+     * @return the HTTP status of the first {@link HttpResponseException} in the causes of the error, -1 if none
+     */
+    public static int getHttpStatusCode(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof HttpResponseException && ((HttpResponseException) cause).getResponse() != null) {
+                return ((HttpResponseException) cause).getResponse().getStatusCode();
+            }
+        }
+        return -1;
+    }
+
+    long getBackoffMillis(int attempt) {
+        // a random wait between half and the whole exponential backoff, so that the throttled operations do not retry together
+        long backoff = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, 30));
+        return ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+    }
+
+    void acquire() throws InterruptedException {
+        CompletableFuture<Void> permit = acquireAsync();
+        try {
+            permit.get();
+        } catch (InterruptedException e) {
+            // a permit granted while the caller was being interrupted is given back
+            if (!permit.cancel(false)) {
+                release();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private Mono<Boolean> acquirePermit() {
+        return Mono.create(sink -> {
+            // 0 while waiting, 1 once the permit is handed to the subscriber, 2 if the subscriber cancelled before
+            AtomicInteger state = new AtomicInteger();
+            CompletableFuture<Void> permit = acquireAsync();
+            sink.onCancel(() -> {
+                if (state.compareAndSet(0, 2)) {
+                    permit.cancel(false);
+                }
+            });
+            permit.whenComplete((result, error) -> {
+                if (error != null) {
+                    return;
+                }
+                if (state.compareAndSet(0, 1)) {
+                    sink.success(Boolean.TRUE);
+                } else {
+                    // granted while the subscriber was cancelling
+                    release();
+                }
+            });
+        });
+    }
+
+    synchronized CompletableFuture<Void> acquireAsync() {
+        if (inFlight < limit && waiters.isEmpty()) {
+            inFlight++;
+            return GRANTED;
+        }
+        CompletableFuture<Void> waiter = new CompletableFuture<>();
+        waiters.add(waiter);
+        return waiter;
+    }
+
+    void release() {
+        List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            inFlight--;
+            granted = grantPermits();
+        }
+        complete(granted);
+    }
+
+    void onSuccess(long latencyNanos) {
+        List<CompletableFuture<Void>> granted = List.of();
+        synchronized (this) {
+            if (baselineLatencyNanos == 0 || latencyNanos < baselineLatencyNanos) {
+                baselineLatencyNanos = latencyNanos;
+            } else {
+                // the baseline slowly follows the observed latency, so that a single fast operation does not block any increase
+                baselineLatencyNanos += (latencyNanos - baselineLatencyNanos) / 100;
+            }
+            if (limit < maxLimit && latencyNanos <= baselineLatencyNanos * LATENCY_TOLERANCE && ++successesSinceIncrease >= limit) {
+                limit++;
+                successesSinceIncrease = 0;
+                granted = grantPermits();
+            }
+        }
+        complete(granted);
+    }
+
+    synchronized void onThrottle() {
+        long now = System.nanoTime();
+        successesSinceIncrease = 0;
+        // the throttling responses received in the same backoff window are related to the same overload
+        if (decreased && now - lastDecreaseNanos < TimeUnit.MILLISECONDS.toNanos(baseDelayMillis)) {
+            return;
+        }
+        limit = Math.max(1, (int) (limit * DECREASE_FACTOR));
+        lastDecreaseNanos = now;
+        decreased = true;
+    }
+
+    private List<CompletableFuture<Void>> grantPermits() {
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+        while (inFlight < limit && !waiters.isEmpty()) {
+            CompletableFuture<Void> waiter = waiters.poll();
+            // a waiter cancelled in the meantime does not take the permit
+            if (!waiter.isDone()) {
+                inFlight++;
+                granted.add(waiter);
+            }
+        }
+        return granted;
+    }
+
+    private void complete(List<CompletableFuture<Void>> granted) {
+        // the waiters are completed outside the lock, because a reactive waiter can run its operation on completion
+        for (CompletableFuture<Void> waiter : granted) {
+            if (!waiter.complete(null)) {
+                release();
+            }
+        }
+    }
+}
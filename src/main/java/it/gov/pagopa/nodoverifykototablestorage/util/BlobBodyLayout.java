@@ -0,0 +1,18 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+/**
+ * Layout of the event bodies saved in Blob Storage.
+ */
+public enum BlobBodyLayout {
+
+    /**
+     * Each body is saved in its own blob, named with the RowKey of the event.
+     */
+    PER_EVENT,
+
+    /**
+     * The bodies of an invocation are appended into segment blobs,
+     * and each event references its own range of the segment.
+     */
+    SEGMENT
+}
@@ -0,0 +1,78 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.azure.core.util.BinaryData;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.ListBlobsOptions;
+import it.gov.pagopa.nodoverifykototablestorage.model.DeadLetterEntry;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Spools each entry as a JSON blob under a prefix of the Blob Storage container.
+ * Blobs are listed in lexicographic order, so the ids ordered by failure time are listed oldest first.
+ */
+public class BlobDeadLetterSink implements DeadLetterSink {
+
+    public static final String DEAD_LETTER_PREFIX = "deadletter/";
+
+    private final Supplier<BlobContainerClient> containerClient;
+
+    /**
+     * @param containerClient the supplier of the container client, resolved on each operation so that a failed
+     *                        initialization of the client is attempted again
+     */
+    public BlobDeadLetterSink(Supplier<BlobContainerClient> containerClient) {
+        this.containerClient = containerClient;
+    }
+
+    @Override
+    public void spool(DeadLetterEntry entry) throws IOException {
+        byte[] content = ObjectMapperUtils.writeValueAsBytes(entry);
+        try {
+            containerClient.get().getBlobClient(getBlobName(entry.getId())).upload(BinaryData.fromBytes(content), true);
+        } catch (RuntimeException e) {
+            throw new IOException("Could not spool dead letter " + entry.getId(), e);
+        }
+    }
+
+    @Override
+    public List<String> list(int maxEntries) throws IOException {
+        try {
+            return containerClient.get().listBlobs(new ListBlobsOptions().setPrefix(DEAD_LETTER_PREFIX).setMaxResultsPerPage(maxEntries), null).stream()
+                    .limit(maxEntries)
+                    .map(BlobItem::getName)
+                    .map(name -> name.substring(DEAD_LETTER_PREFIX.length(), name.length() - ".json".length()))
+                    .collect(Collectors.toList());
+        } catch (RuntimeException e) {
+            throw new IOException("Could not list dead letters", e);
+        }
+    }
+
+    @Override
+    public DeadLetterEntry read(String id) throws IOException {
+        byte[] content;
+        try {
+            content = containerClient.get().getBlobClient(getBlobName(id)).downloadContent().toBytes();
+        } catch (RuntimeException e) {
+            throw new IOException("Could not read dead letter " + id, e);
+        }
+        return ObjectMapperUtils.readValue(content, DeadLetterEntry.class);
+    }
+
+    @Override
+    public void delete(String id) throws IOException {
+        try {
+            containerClient.get().getBlobClient(getBlobName(id)).deleteIfExists();
+        } catch (RuntimeException e) {
+            throw new IOException("Could not delete dead letter " + id, e);
+        }
+    }
+
+    static String getBlobName(String id) {
+        return DEAD_LETTER_PREFIX + id + ".json";
+    }
+}
@@ -0,0 +1,112 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression applied to the event bodies before storing them in Blob Storage.
+ * The content encoding is set on the stored blob and recorded in the body reference, so that readers can decompress it.
+ */
+public enum BodyCompression {
+
+    NONE(null) {
+        @Override
+        public byte[] compress(byte[] body) {
+            return body;
+        }
+
+        @Override
+        public byte[] decompress(byte[] content) {
+            return content;
+        }
+    },
+
+    GZIP("gzip") {
+        @Override
+        public byte[] compress(byte[] body) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+                gzip.write(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return output.toByteArray();
+        }
+
+        @Override
+        public byte[] decompress(byte[] content) {
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(content))) {
+                return gzip.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    },
+
+    ZSTD("zstd") {
+        @Override
+        public byte[] compress(byte[] body) {
+            return Zstd.compress(body, Constants.BLOB_BODY_ZSTD_LEVEL);
+        }
+
+        @Override
+        public byte[] decompress(byte[] content) {
+            long size = Zstd.getFrameContentSize(content);
+            if (size == ZSTD_CONTENT_SIZE_UNKNOWN) {
+                // a frame written in streaming mode does not record its size, so it is decompressed as a stream
+                try (ZstdInputStream zstd = new ZstdInputStream(new ByteArrayInputStream(content))) {
+                    return zstd.readAllBytes();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            if (size < 0 || size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The zstd content does not declare a valid decompressed size.");
+            }
+            return Zstd.decompress(content, (int) size);
+        }
+    };
+
+    // the value returned by Zstd.getFrameContentSize for a frame that does not record its decompressed size
+    private static final long ZSTD_CONTENT_SIZE_UNKNOWN = -1;
+
+    private final String contentEncoding;
+
+    BodyCompression(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * @return the value of the Content-Encoding of the compressed body, null if the body is not compressed
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public abstract byte[] compress(byte[] body);
+
+    public abstract byte[] decompress(byte[] content);
+
+    /**
+     * @param contentEncoding the Content-Encoding recorded for a stored body, null if the body is not compressed
+     * @return the compression matching the content encoding
+     */
+    public static BodyCompression fromContentEncoding(String contentEncoding) {
+        for (BodyCompression compression : values()) {
+            if (compression.contentEncoding != null && compression.contentEncoding.equalsIgnoreCase(contentEncoding)) {
+                return compression;
+            }
+        }
+        if (contentEncoding == null || contentEncoding.isEmpty()) {
+            return NONE;
+        }
+        throw new IllegalArgumentException("Unsupported content encoding [" + contentEncoding + "].");
+    }
+}
@@ -0,0 +1,158 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Packs the bodies of a batch of events into segments, each one saved as a single blob.
+ * Every body is encoded (and compressed) on its own, so that it can be read back with a ranged read of the segment.
+ */
+public class BodySegmentPacker {
+
+    public static final String SEGMENT_PREFIX = "segments/";
+
+    private final BodyCompression compression;
+
+    private final long maxSegmentBytes;
+
+    public BodySegmentPacker(BodyCompression compression, long maxSegmentBytes) {
+        this.compression = compression;
+        this.maxSegmentBytes = Math.max(1, maxSegmentBytes);
+    }
+
+    public BodyCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Pack the bodies of the items, in input order, in segments of at most {@code maxSegmentBytes} bytes.
+     * A body bigger than the limit is saved alone in its own segment.
+     *
+     * @param items the items whose body must be packed
+     * @param bodyExtractor the function that returns the body of an item
+     * @param keyExtractor the function that returns the unique key of an item, used with the hash of the content to name the segments
+     * @return the list of segments
+     */
+    public <T> List<Segment<T>> pack(List<T> items, Function<T, String> bodyExtractor, Function<T, String> keyExtractor) {
+        List<Segment<T>> segments = new ArrayList<>();
+        SegmentBuilder<T> builder = null;
+        for (T item : items) {
+            byte[] body = bodyExtractor.apply(item).getBytes(StandardCharsets.UTF_8);
+            byte[] content = compression.compress(body);
+            if (builder != null && builder.size() + content.length > maxSegmentBytes) {
+                segments.add(builder.build());
+                builder = null;
+            }
+            if (builder == null) {
+                builder = new SegmentBuilder<>(keyExtractor.apply(item));
+            }
+            builder.append(item, content, body.length);
+        }
+        if (builder != null) {
+            segments.add(builder.build());
+        }
+        return segments;
+    }
+
+    private static class SegmentBuilder<T> {
+
+        private final String firstKey;
+
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        private final List<Entry<T>> entries = new ArrayList<>();
+
+        SegmentBuilder(String firstKey) {
+            this.firstKey = firstKey;
+        }
+
+        int size() {
+            return content.size();
+        }
+
+        void append(T item, byte[] itemContent, long originalLength) {
+            entries.add(new Entry<>(item, content.size(), itemContent.length, originalLength));
+            content.write(itemContent, 0, itemContent.length);
+        }
+
+        Segment<T> build() {
+            // the name includes the hash of the packed bytes: a retry of the same batch overwrites the segment with the same bytes,
+            // while a redelivery of the same first event with different contents never overwrites the ranges referenced by saved rows
+            byte[] bytes = content.toByteArray();
+            return new Segment<>(SEGMENT_PREFIX + firstKey + "_" + entries.size() + "_" + ContentHash.sha256(bytes), bytes, entries);
+        }
+    }
+
+    public static class Segment<T> {
+
+        private final String name;
+
+        private final byte[] content;
+
+        private final List<Entry<T>> entries;
+
+        Segment(String name, byte[] content, List<Entry<T>> entries) {
+            this.name = name;
+            this.content = content;
+            this.entries = entries;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public List<Entry<T>> getEntries() {
+            return entries;
+        }
+    }
+
+    public static class Entry<T> {
+
+        private final T item;
+
+        private final long offset;
+
+        private final long length;
+
+        private final long originalLength;
+
+        Entry(T item, long offset, long length, long originalLength) {
+            this.item = item;
+            this.offset = offset;
+            this.length = length;
+            this.originalLength = originalLength;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * @return the position of the first byte of the item in the segment
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the number of bytes of the item in the segment
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * @return the size in bytes of the item before the compression
+         */
+        public long getOriginalLength() {
+            return originalLength;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package it.gov.pagopa.nodoverifykototablestorage.util;
 
+import java.util.Optional;
 import java.util.regex.Pattern;
 
 public class Constants {
@@ -10,6 +11,7 @@ public class Constants {
     public static final String POM_PROPERTIES_PATH = "/META-INF/maven/it.gov.pagopa/nodoverifykotodatastore/pom.properties";
     public static final Pattern REPLACE_DASH_PATTERN = Pattern.compile("-([a-zA-Z])");
     public static final String NA = "NA";
+    public static final String ETAG_WILDCARD = "*";
 
 
     public static final String ID_EVENT_FIELD = "id";
@@ -20,6 +22,7 @@ public class Constants {
 
     public static final String DATE_TIME_EVENT_FIELD = "dateTime";
     public static final String FAULTBEAN_TIMESTAMP_EVENT_FIELD = "faultBean.timestamp";
+    public static final String FAULTBEAN_FAULT_CODE_EVENT_FIELD = "faultBean.faultCode";
     public static final String NOTICE_NUMBER_EVENT_FIELD = "debtorPosition.noticeNumber";
     public static final String ID_PA_EVENT_FIELD = "creditor.idPA";
     public static final String ID_PSP_EVENT_FIELD = "psp.idPsp";
@@ -33,8 +36,73 @@ public class Constants {
     public static final String ID_PSP_TABLESTORAGE_EVENT_FIELD = "idPsp";
     public static final String ID_STATION_TABLESTORAGE_EVENT_FIELD = "idStation";
     public static final String ID_CHANNEL_TABLESTORAGE_EVENT_FIELD = "idChannel";
+    public static final String FAULT_CODE_TABLESTORAGE_EVENT_FIELD = "faultCode";
     public static final String TIMESTAMP_TABLESTORAGE_EVENT_FIELD = "timestamp";
     public static final String BLOB_BODY_REFERENCE_TABLESTORAGE_EVENT_FIELD = "blobBodyRef";
     public static final String TABLE_NAME = System.getenv("TABLE_STORAGE_TABLE_NAME");
+    public static final boolean KO_ROLLUP_ENABLED = getBooleanEnv("KO_ROLLUP_ENABLED", false);
+    public static final String KO_ROLLUP_TABLE_NAME = getStringEnv("KO_ROLLUP_TABLE_NAME", TABLE_NAME + "Rollup");
+    public static final String KO_ROLLUP_DIMENSIONS = getStringEnv("KO_ROLLUP_DIMENSIONS", "idPA,idPsp,idStation");
+    public static final int KO_ROLLUP_MAX_ATTEMPTS = getIntEnv("KO_ROLLUP_MAX_ATTEMPTS", 5);
     public static final String BLOB_NAME = System.getenv("BLOB_STORAGE_CONTAINER_NAME");
+    public static final PartitionKeyStrategy PARTITION_KEY_STRATEGY = PartitionKeyStrategy.valueOf(getStringEnv("PARTITION_KEY_STRATEGY", PartitionKeyStrategy.DAY.name()));
+    public static final int PARTITION_KEY_BUCKETS = getIntEnv("PARTITION_KEY_BUCKETS", 16);
+    public static final int PROPERTY_NAME_CACHE_MAX_ENTRIES = 1024;
+    public static final String TABLE_PROPERTY_ALLOW_LIST = getStringEnv("TABLE_PROPERTY_ALLOW_LIST", null);
+    // a string value of a Table Storage entity is limited to 64 KiB, that is 32K UTF-16 characters
+    public static final int TABLE_PROPERTY_MAX_STRING_LENGTH = getIntEnv("TABLE_PROPERTY_MAX_STRING_LENGTH", 32 * 1024);
+    // comma separated columns among noticeNumber, idPA and idPsp with a lookup table, none by default
+    public static final String TABLE_INDEX_FIELDS = getStringEnv("TABLE_INDEX_FIELDS", null);
+    public static final BodyCompression BLOB_BODY_COMPRESSION = BodyCompression.valueOf(getStringEnv("BLOB_BODY_COMPRESSION", BodyCompression.NONE.name()));
+    public static final int BLOB_BODY_ZSTD_LEVEL = getIntEnv("BLOB_BODY_ZSTD_LEVEL", 3);
+    public static final boolean BLOB_BODY_CONTENT_ADDRESSED = getBooleanEnv("BLOB_BODY_CONTENT_ADDRESSED", false);
+    public static final BlobBodyLayout BLOB_BODY_LAYOUT = BlobBodyLayout.valueOf(getStringEnv("BLOB_BODY_LAYOUT", BlobBodyLayout.PER_EVENT.name()));
+    public static final int BLOB_SEGMENT_MAX_BYTES = getIntEnv("BLOB_SEGMENT_MAX_BYTES", 16 * 1024 * 1024);
+    public static final int STORAGE_HTTP_MAX_CONNECTIONS = getIntEnv("STORAGE_HTTP_MAX_CONNECTIONS", 64);
+    public static final int STORAGE_HTTP_MAX_IDLE_SECONDS = getIntEnv("STORAGE_HTTP_MAX_IDLE_SECONDS", 60);
+    public static final int STORAGE_HTTP_CONNECT_TIMEOUT_SECONDS = getIntEnv("STORAGE_HTTP_CONNECT_TIMEOUT_SECONDS", 10);
+    public static final int STORAGE_HTTP_RESPONSE_TIMEOUT_SECONDS = getIntEnv("STORAGE_HTTP_RESPONSE_TIMEOUT_SECONDS", 60);
+    public static final boolean STORAGE_CLIENT_PREWARM = getBooleanEnv("STORAGE_CLIENT_PREWARM", false);
+    public static final int STORAGE_CLIENT_PREWARM_CONNECTIONS = getIntEnv("STORAGE_CLIENT_PREWARM_CONNECTIONS", 4);
+    public static final ProcessingEngine PROCESSING_ENGINE = ProcessingEngine.valueOf(getStringEnv("PROCESSING_ENGINE", ProcessingEngine.BLOCKING.name()));
+    public static final boolean STORAGE_IO_VIRTUAL_THREADS = getBooleanEnv("STORAGE_IO_VIRTUAL_THREADS", false);
+    public static final int BLOB_UPLOAD_PARALLELISM = getIntEnv("BLOB_UPLOAD_PARALLELISM", 10);
+    public static final int TABLE_TRANSACTION_PARALLELISM = getIntEnv("TABLE_TRANSACTION_PARALLELISM", 4);
+    public static final int STORAGE_THROTTLE_MAX_RETRIES = getIntEnv("STORAGE_THROTTLE_MAX_RETRIES", 3);
+    public static final int STORAGE_THROTTLE_BASE_DELAY_MILLIS = getIntEnv("STORAGE_THROTTLE_BASE_DELAY_MILLIS", 500);
+    public static final int STORAGE_THROTTLE_MAX_DELAY_MILLIS = getIntEnv("STORAGE_THROTTLE_MAX_DELAY_MILLIS", 8000);
+    public static final int TABLE_TRANSACTION_MAX_ACTIONS = getIntEnv("TABLE_TRANSACTION_MAX_ACTIONS", 100);
+    public static final int TABLE_TRANSACTION_MAX_PAYLOAD_BYTES = getIntEnv("TABLE_TRANSACTION_MAX_PAYLOAD_BYTES", 4_000_000);
+    public static final int COMPLETION_REGISTRY_MAX_ENTRIES = getIntEnv("COMPLETION_REGISTRY_MAX_ENTRIES", 50_000);
+    public static final int COMPLETION_REGISTRY_TTL_MINUTES = getIntEnv("COMPLETION_REGISTRY_TTL_MINUTES", 24 * 60);
+    public static final boolean DUPLICATE_SUPPRESSION_ENABLED = getBooleanEnv("DUPLICATE_SUPPRESSION_ENABLED", true);
+    public static final boolean DEAD_LETTER_ENABLED = getBooleanEnv("DEAD_LETTER_ENABLED", true);
+    public static final String DEAD_LETTER_DIRECTORY = getStringEnv("DEAD_LETTER_DIRECTORY", null);
+    public static final int DEAD_LETTER_REPLAY_MAX_ENTRIES = getIntEnv("DEAD_LETTER_REPLAY_MAX_ENTRIES", 20);
+    public static final int DEAD_LETTER_REPLAY_EVENTS_PER_SECOND = getIntEnv("DEAD_LETTER_REPLAY_EVENTS_PER_SECOND", 50);
+    public static final int QUERY_DEFAULT_PAGE_SIZE = getIntEnv("QUERY_DEFAULT_PAGE_SIZE", 100);
+    public static final int QUERY_MAX_PAGE_SIZE = getIntEnv("QUERY_MAX_PAGE_SIZE", 1000);
+    public static final int QUERY_MAX_RANGE_DAYS = getIntEnv("QUERY_MAX_RANGE_DAYS", 31);
+    public static final int QUERY_PARALLELISM = getIntEnv("QUERY_PARALLELISM", 8);
+    public static final double EVENT_TRACE_SAMPLE_RATE = getDoubleEnv("EVENT_TRACE_SAMPLE_RATE", 0.0);
+    public static final int EVENT_TRACE_RAW_MAX_CHARS = getIntEnv("EVENT_TRACE_RAW_MAX_CHARS", 16 * 1024);
+    public static final boolean RETRY_REMOTE_CHECK_ENABLED = getBooleanEnv("RETRY_REMOTE_CHECK_ENABLED", true);
+    // a Table Storage filter cannot contain more than 15 discrete comparisons, one is used by the PartitionKey
+    public static final int RETRY_REMOTE_CHECK_MAX_ROW_KEYS_PER_QUERY = 14;
+
+    private static String getStringEnv(String name, String defaultValue) {
+        return Optional.ofNullable(System.getenv(name)).map(String::trim).filter(value -> !value.isEmpty()).orElse(defaultValue);
+    }
+
+    private static boolean getBooleanEnv(String name, boolean defaultValue) {
+        return Optional.ofNullable(System.getenv(name)).map(String::trim).filter(value -> !value.isEmpty()).map(Boolean::parseBoolean).orElse(defaultValue);
+    }
+
+    private static int getIntEnv(String name, int defaultValue) {
+        return Optional.ofNullable(System.getenv(name)).map(String::trim).filter(value -> !value.isEmpty()).map(Integer::parseInt).orElse(defaultValue);
+    }
+
+    private static double getDoubleEnv(String name, double defaultValue) {
+        return Optional.ofNullable(System.getenv(name)).map(String::trim).filter(value -> !value.isEmpty()).map(Double::parseDouble).orElse(defaultValue);
+    }
 }
@@ -0,0 +1,45 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Names the event bodies by the SHA-256 hash of their content, so that the same body is always stored in the same blob.
+ * The name also carries the content encoding, because the same body compressed in different ways is a different blob.
+ */
+public class ContentHash {
+
+    public static final String CONTENT_PREFIX = "sha256/";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {}
+
+    /**
+     * @return the lowercase hex SHA-256 hash of the content
+     */
+    public static String sha256(byte[] content) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java runtime is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        char[] hex = new char[hash.length * 2];
+        for (int index = 0; index < hash.length; index++) {
+            hex[index * 2] = HEX_DIGITS[(hash[index] >> 4) & 0x0F];
+            hex[index * 2 + 1] = HEX_DIGITS[hash[index] & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * @param contentHash the hash of the original body
+     * @param compression the compression of the stored body
+     * @return the name of the blob, i.e. {@code sha256/<hash>} or {@code sha256/<hash>.gzip}
+     */
+    public static String getBlobName(String contentHash, BodyCompression compression) {
+        return CONTENT_PREFIX + contentHash + (compression == BodyCompression.NONE ? "" : "." + compression.getContentEncoding());
+    }
+}
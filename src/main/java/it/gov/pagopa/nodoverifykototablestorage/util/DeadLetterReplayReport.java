@@ -0,0 +1,20 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.Map;
+
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class DeadLetterReplayReport {
+
+    private int replayedEntries;
+    private int replayedEvents;
+    // error of each entry that could not be replayed, the entry is kept in the spool
+    private Map<String, String> failures;
+}
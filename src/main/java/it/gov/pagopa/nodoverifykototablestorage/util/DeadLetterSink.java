@@ -0,0 +1,25 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import it.gov.pagopa.nodoverifykototablestorage.model.DeadLetterEntry;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Spool of the batches of events that exhausted the retries of the function.
+ * The entries are kept until they are replayed successfully.
+ */
+public interface DeadLetterSink {
+
+    void spool(DeadLetterEntry entry) throws IOException;
+
+    /**
+     * @param maxEntries the max number of returned ids
+     * @return the ids of the spooled entries, oldest first
+     */
+    List<String> list(int maxEntries) throws IOException;
+
+    DeadLetterEntry read(String id) throws IOException;
+
+    void delete(String id) throws IOException;
+}
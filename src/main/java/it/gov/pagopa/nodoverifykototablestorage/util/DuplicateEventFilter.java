@@ -0,0 +1,47 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filter of the duplicate events of an invocation, keyed by the generated RowKey.
+ * The repeated occurrences of an event in the same batch are dropped, as two actions on the same RowKey
+ * would also make their transaction fail; optionally, the events already persisted by a recent invocation
+ * on the same instance are dropped too, so that the events delivered again by Event Hub are not stored twice.
+ * A new filter is used for each invocation, it is safe for concurrent use.
+ */
+public class DuplicateEventFilter {
+
+    private final Set<String> acceptedRowKeys = ConcurrentHashMap.newKeySet();
+
+    private final EventCompletionRegistry completionRegistry;
+
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * @param completionRegistry the registry of the events persisted by the previous invocations, null to drop only the duplicates within the batch
+     */
+    public DuplicateEventFilter(EventCompletionRegistry completionRegistry) {
+        this.completionRegistry = completionRegistry;
+    }
+
+    /**
+     * @param rowKey the RowKey of an event of the batch
+     * @return true if the event must be persisted, false if it is a duplicate
+     */
+    public boolean accept(String rowKey) {
+        boolean isDuplicate = (completionRegistry != null && completionRegistry.isPersisted(rowKey)) || !acceptedRowKeys.add(rowKey);
+        if (isDuplicate) {
+            duplicates.increment();
+        }
+        return !isDuplicate;
+    }
+
+    /**
+     * @return the number of dropped events
+     */
+    public int getDuplicates() {
+        return duplicates.intValue();
+    }
+}
@@ -0,0 +1,109 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, time-expiring registry of the persistence steps already completed for each event, keyed by the generated RowKey.
+ * It is used on retries in order to re-process only the events that actually failed in a previous attempt on the same instance,
+ * and to drop the events delivered again after being persisted by a recent invocation.
+ * When the registry is full, the least recently used markers are discarded.
+ */
+public class EventCompletionRegistry {
+
+    private final int maxEntries;
+
+    private final long ttlMillis;
+
+    private final Clock clock;
+
+    private final Map<String, Completion> completions;
+
+    public EventCompletionRegistry(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, Clock.systemUTC());
+    }
+
+    EventCompletionRegistry(int maxEntries, Duration ttl, Clock clock) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.completions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Completion> eldest) {
+                return size() > EventCompletionRegistry.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Record that the body of the event is stored in Blob Storage.
+     *
+     * @param rowKey the RowKey of the event
+     * @param blobBodyReference the reference to the stored body
+     */
+    public synchronized void markBlobStored(String rowKey, String blobBodyReference) {
+        Completion completion = getValidCompletion(rowKey);
+        completions.put(rowKey, new Completion(blobBodyReference, completion != null && completion.persisted, clock.millis()));
+    }
+
+    /**
+     * Record that the event is persisted in Table Storage.
+     *
+     * @param rowKey the RowKey of the event
+     */
+    public synchronized void markPersisted(String rowKey) {
+        Completion completion = getValidCompletion(rowKey);
+        completions.put(rowKey, new Completion(completion != null ? completion.blobBodyReference : null, true, clock.millis()));
+    }
+
+    /**
+     * @param rowKey the RowKey of the event
+     * @return the reference to the body already stored in Blob Storage, or null if the body must be uploaded
+     */
+    public synchronized String getBlobBodyReference(String rowKey) {
+        Completion completion = getValidCompletion(rowKey);
+        return completion != null ? completion.blobBodyReference : null;
+    }
+
+    /**
+     * @param rowKey the RowKey of the event
+     * @return true if the event is already persisted in Table Storage
+     */
+    public synchronized boolean isPersisted(String rowKey) {
+        Completion completion = getValidCompletion(rowKey);
+        return completion != null && completion.persisted;
+    }
+
+    /**
+     * Forget all the completed persistence steps.
+     */
+    public synchronized void clear() {
+        completions.clear();
+    }
+
+    private Completion getValidCompletion(String rowKey) {
+        Completion completion = completions.get(rowKey);
+        if (completion != null && clock.millis() - completion.updatedAt > ttlMillis) {
+            completions.remove(rowKey);
+            completion = null;
+        }
+        return completion;
+    }
+
+    private static class Completion {
+
+        private final String blobBodyReference;
+
+        private final boolean persisted;
+
+        private final long updatedAt;
+
+        Completion(String blobBodyReference, boolean persisted, long updatedAt) {
+            this.blobBodyReference = blobBodyReference;
+            this.persisted = persisted;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
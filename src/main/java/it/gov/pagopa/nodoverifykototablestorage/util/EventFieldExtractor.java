@@ -0,0 +1,189 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extracts a fixed set of string fields from a JSON event in a single streaming pass, without materializing the whole event.
+ * The fields are identified by dotted paths (i.e. {@code creditor.idPA}) that are compiled once in a tree when the extractor is created.
+ * The rest of the event is skipped, but the event is still entirely read so that malformed events are rejected as before.
+ * A field that is not a string makes the event invalid, unless its path is lenient: a lenient field keeps the text of
+ * a number or a boolean, and is considered as missing if it is an object or an array.
+ */
+public class EventFieldExtractor {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Map<String, Integer> pathIndexes = new HashMap<>();
+
+    private final List<int[]> pathParents = new ArrayList<>();
+
+    private final List<Boolean> lenientPaths = new ArrayList<>();
+
+    private final Node root = new Node(-1, -1);
+
+    private int objectCount = 0;
+
+    public EventFieldExtractor(String... paths) {
+        this(List.of(), paths);
+    }
+
+    /**
+     * @param lenientPaths the paths of the fields extracted also if they are not strings
+     * @param paths the paths of the fields extracted only if they are strings
+     */
+    public EventFieldExtractor(Collection<String> lenientPaths, String... paths) {
+        for (String path : paths) {
+            addPath(path, false);
+        }
+        for (String path : lenientPaths) {
+            addPath(path, true);
+        }
+    }
+
+    private void addPath(String path, boolean lenient) {
+        if (pathIndexes.containsKey(path)) {
+            return;
+        }
+        String[] segments = path.split("\\.");
+        int[] parents = new int[segments.length - 1];
+        Node node = root;
+        for (int index = 0; index < segments.length - 1; index++) {
+            node = node.children.computeIfAbsent(segments[index], segment -> new Node(-1, objectCount++));
+            if (node.objectId < 0) {
+                throw new IllegalArgumentException("The path [" + path + "] goes through a field already defined as a leaf.");
+            }
+            parents[index] = node.objectId;
+        }
+        int pathIndex = pathParents.size();
+        Node previous = node.children.putIfAbsent(segments[segments.length - 1], new Node(pathIndex, -1));
+        if (previous != null) {
+            throw new IllegalArgumentException("The path [" + path + "] is already defined as an object.");
+        }
+        pathIndexes.put(path, pathIndex);
+        pathParents.add(parents);
+        lenientPaths.add(lenient);
+    }
+
+    /**
+     * Read the event and extract the values of the configured paths.
+     *
+     * @param json the event in string form
+     * @return the extracted fields
+     * @throws IOException if the event is not a valid JSON object
+     */
+    public ExtractedFields extract(String json) throws IOException {
+        ExtractedFields fields = new ExtractedFields(new String[pathParents.size()], new boolean[objectCount]);
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "The event is not a JSON object.");
+            }
+            readObject(parser, root, fields);
+        }
+        return fields;
+    }
+
+    private void readObject(JsonParser parser, Node node, ExtractedFields fields) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            Node child = node.children.get(parser.getCurrentName());
+            JsonToken token = parser.nextToken();
+            if (child == null) {
+                parser.skipChildren();
+            } else if (child.pathIndex >= 0) {
+                readLeaf(parser, token, child.pathIndex, fields);
+            } else if (token == JsonToken.START_OBJECT) {
+                fields.presentObjects[child.objectId] = true;
+                readObject(parser, child, fields);
+            } else {
+                // a scalar or an array where an object is expected is considered as a missing object
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readLeaf(JsonParser parser, JsonToken token, int pathIndex, ExtractedFields fields) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            fields.values[pathIndex] = parser.getText();
+        } else if (token == JsonToken.VALUE_NULL) {
+            fields.values[pathIndex] = null;
+        } else if (lenientPaths.get(pathIndex)) {
+            fields.values[pathIndex] = token.isScalarValue() ? parser.getText() : null;
+            parser.skipChildren();
+        } else {
+            parser.skipChildren();
+            throw new IllegalArgumentException("The field [" + getPath(pathIndex) + "] is not a string in the passed event.");
+        }
+    }
+
+    private String getPath(int pathIndex) {
+        return pathIndexes.entrySet().stream().filter(entry -> entry.getValue() == pathIndex).map(Map.Entry::getKey).findFirst().orElse(null);
+    }
+
+    private int getPathIndex(String path) {
+        Integer pathIndex = pathIndexes.get(path);
+        if (pathIndex == null) {
+            throw new IllegalArgumentException("The field [" + path + "] is not extracted by this extractor.");
+        }
+        return pathIndex;
+    }
+
+    private static class Node {
+
+        private final int pathIndex;
+
+        private final int objectId;
+
+        private final Map<String, Node> children = new HashMap<>();
+
+        Node(int pathIndex, int objectId) {
+            this.pathIndex = pathIndex;
+            this.objectId = objectId;
+        }
+    }
+
+    public class ExtractedFields {
+
+        private final String[] values;
+
+        private final boolean[] presentObjects;
+
+        private ExtractedFields(String[] values, boolean[] presentObjects) {
+            this.values = values;
+            this.presentObjects = presentObjects;
+        }
+
+        /**
+         * @param path the path of the field
+         * @return the value of the field, or null if the field or one of its parent objects is missing
+         */
+        public String get(String path) {
+            return values[getPathIndex(path)];
+        }
+
+        /**
+         * @param path the path of the field
+         * @param defaultValue the value to return if the field is missing
+         * @return the value of the field, or the default value if the field is missing
+         * @throws IllegalArgumentException if one of the parent objects of the field is missing
+         */
+        public String getField(String path, String defaultValue) {
+            int pathIndex = getPathIndex(path);
+            for (int parent : pathParents.get(pathIndex)) {
+                if (!presentObjects[parent]) {
+                    throw new IllegalArgumentException("The field [" + path + "] does not exists in the passed event.");
+                }
+            }
+            String value = values[pathIndex];
+            return value == null ? defaultValue : value;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EventQueryPage {
+
+    // projected columns of each event, ordered by partition and then by RowKey
+    private List<Map<String, Object>> events;
+    // token of the next page, missing on the last page
+    private String continuationToken;
+}
@@ -0,0 +1,55 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Continuation token of a query spanning more partitions.
+ * For each partition still to be read, in scan order, the token holds the RowKey the partition is resumed from
+ * (the first event not returned yet, or the next RowKey to be scanned by the service), empty to read it from the start.
+ * The token is the URL-safe Base64 of its JSON, the clients must handle it as an opaque value.
+ */
+public class EventQueryToken {
+
+    /**
+     * Hide from public usage.
+     */
+    private EventQueryToken() {
+    }
+
+    /**
+     * @param cursors the RowKey each partition still to be read is resumed from
+     * @return the token, null if all the partitions were read
+     */
+    public static String encode(Map<String, String> cursors) throws IOException {
+        if (cursors.isEmpty()) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(ObjectMapperUtils.writeValueAsBytes(cursors));
+    }
+
+    /**
+     * @param token a token returned by {@link #encode(Map)}
+     * @return the RowKey each partition still to be read is resumed from, in scan order
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static Map<String, String> decode(String token) {
+        Map<?, ?> decoded;
+        try {
+            decoded = ObjectMapperUtils.readValue(Base64.getUrlDecoder().decode(token.trim().getBytes(StandardCharsets.US_ASCII)), LinkedHashMap.class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed continuation token", e);
+        }
+        Map<String, String> cursors = new LinkedHashMap<>();
+        decoded.forEach((partitionKey, rowKey) -> {
+            if (!(partitionKey instanceof String) || !(rowKey instanceof String)) {
+                throw new IllegalArgumentException("Malformed continuation token");
+            }
+            cursors.put((String) partitionKey, (String) rowKey);
+        });
+        return cursors;
+    }
+}
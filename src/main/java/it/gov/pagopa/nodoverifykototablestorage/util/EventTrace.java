@@ -0,0 +1,115 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.azure.data.tables.models.TableEntity;
+import com.azure.data.tables.models.TableTransactionAction;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds the traces of the events processed by an invocation.
+ * The summary has a fixed size regardless of the batch size (number of events and partitions, range of the event timestamps
+ * and of the RowKeys), while the per-event detail is built only when explicitly requested, i.e. when FINE is enabled or
+ * on the invocations picked by the sampling.
+ * The dump of the raw events is capped to a max number of characters, the omitted events are only counted.
+ */
+public class EventTrace {
+
+    private final double sampleRate;
+
+    private final int rawMaxChars;
+
+    public EventTrace(double sampleRate, int rawMaxChars) {
+        this.sampleRate = sampleRate;
+        this.rawMaxChars = rawMaxChars;
+    }
+
+    /**
+     * @return true if the per-event detail of the current invocation must be logged regardless of the log level
+     */
+    public boolean isSampled() {
+        return sampleRate >= 1 || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    public String summarize(Map<String, List<TableTransactionAction>> eventsToPersist) {
+        int count = 0;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        String firstRowKey = null;
+        String lastRowKey = null;
+        for (List<TableTransactionAction> actions : eventsToPersist.values()) {
+            for (TableTransactionAction action : actions) {
+                TableEntity entity = action.getEntity();
+                count++;
+                Object timestamp = entity.getProperty(Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD);
+                if (timestamp instanceof Long) {
+                    minTimestamp = Math.min(minTimestamp, (Long) timestamp);
+                    maxTimestamp = Math.max(maxTimestamp, (Long) timestamp);
+                }
+                String rowKey = entity.getRowKey();
+                if (firstRowKey == null || rowKey.compareTo(firstRowKey) < 0) {
+                    firstRowKey = rowKey;
+                }
+                if (lastRowKey == null || rowKey.compareTo(lastRowKey) > 0) {
+                    lastRowKey = rowKey;
+                }
+            }
+        }
+        if (count == 0) {
+            return "{Count: 0}";
+        }
+        return String.format("{Count: %d, Partitions: %d, EventTimestamps: [%s, %s], RowKeys: [%s, %s]}", count, eventsToPersist.size(),
+                minTimestamp == Long.MAX_VALUE ? Constants.NA : String.valueOf(minTimestamp),
+                maxTimestamp == Long.MIN_VALUE ? Constants.NA : String.valueOf(maxTimestamp),
+                firstRowKey, lastRowKey);
+    }
+
+    public String detail(Map<String, List<TableTransactionAction>> eventsToPersist) {
+        StringBuilder builder = new StringBuilder("[");
+        String partitionSeparator = "";
+        for (List<TableTransactionAction> actions : eventsToPersist.values()) {
+            builder.append(partitionSeparator).append('[');
+            String eventSeparator = "";
+            for (TableTransactionAction action : actions) {
+                TableEntity entity = action.getEntity();
+                Object timestamp = entity.getProperty(Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD);
+                builder.append(eventSeparator)
+                        .append("{PartitionKey: ").append(entity.getPartitionKey())
+                        .append(", RowKey: ").append(entity.getRowKey())
+                        .append(", EventTimestamp: ").append(timestamp instanceof Long ? timestamp : -1L)
+                        .append('}');
+                eventSeparator = ", ";
+            }
+            builder.append(']');
+            partitionSeparator = ", ";
+        }
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Dumps the raw events until the max number of characters is reached, the event crossing the limit is truncated.
+     */
+    public String dumpRaw(List<String> events) {
+        StringBuilder builder = new StringBuilder("[");
+        int dumped = 0;
+        for (String event : events) {
+            String separator = dumped == 0 ? "" : ", ";
+            int available = rawMaxChars - (builder.length() - 1);
+            if (available < separator.length() + event.length()) {
+                if (available > separator.length()) {
+                    builder.append(separator).append(event, 0, available - separator.length()).append("...");
+                }
+                break;
+            }
+            builder.append(separator).append(event);
+            dumped++;
+        }
+        builder.append(']');
+        if (dumped < events.size()) {
+            builder.append(" (").append(events.size() - dumped).append(" of ").append(events.size())
+                    .append(" events omitted or truncated, max ").append(rawMaxChars).append(" characters)");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,173 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses the {@code faultBean.timestamp} of the events, in the form {@code yyyy-MM-ddTHH:mm:ss[.SSSSSS]} where the fraction
+ * of seconds can have from 0 to 6 digits, reading the characters directly without any formatter or intermediate padded string.
+ * The parsing is equivalent to padding the fraction to 6 digits and parsing the result with the pattern
+ * {@code yyyy-MM-dd'T'HH:mm:ss.SSSSSS} in smart resolver mode: a day of month exceeding the length of the month is moved to the
+ * last day of the month and {@code 24:00:00} is moved to the midnight of the following day.
+ */
+public class FaultBeanTimestampCodec {
+
+    private static final int DATE_TIME_LENGTH = 19;
+
+    private static final int MAX_FRACTION_DIGITS = 6;
+
+    private static final int[] FRACTION_MULTIPLIERS = {1_000_000, 100_000, 10_000, 1_000, 100, 10, 1};
+
+    private FaultBeanTimestampCodec() {}
+
+    /**
+     * @param timestamp the timestamp to parse
+     * @return the parsed timestamp
+     * @throws DateTimeParseException if the timestamp is not valid
+     */
+    public static ParsedTimestamp parse(String timestamp) {
+        int length = timestamp.length();
+        if (length < DATE_TIME_LENGTH
+                || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-' || timestamp.charAt(10) != 'T'
+                || timestamp.charAt(13) != ':' || timestamp.charAt(16) != ':') {
+            throw error(timestamp, 0);
+        }
+        int fractionDigits = 0;
+        if (length > DATE_TIME_LENGTH) {
+            if (timestamp.charAt(DATE_TIME_LENGTH) != '.') {
+                throw error(timestamp, DATE_TIME_LENGTH);
+            }
+            fractionDigits = length - DATE_TIME_LENGTH - 1;
+            if (fractionDigits > MAX_FRACTION_DIGITS) {
+                throw error(timestamp, DATE_TIME_LENGTH + 1 + MAX_FRACTION_DIGITS);
+            }
+        }
+        int year = readNumber(timestamp, 0, 4);
+        int month = readNumber(timestamp, 5, 2);
+        int day = readNumber(timestamp, 8, 2);
+        int hour = readNumber(timestamp, 11, 2);
+        int minute = readNumber(timestamp, 14, 2);
+        int second = readNumber(timestamp, 17, 2);
+        int micros = fractionDigits == 0 ? 0 : readNumber(timestamp, DATE_TIME_LENGTH + 1, fractionDigits) * FRACTION_MULTIPLIERS[fractionDigits];
+
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31 || minute > 59 || second > 59
+                || hour > 24 || (hour == 24 && (minute != 0 || second != 0 || micros != 0))) {
+            throw error(timestamp, 0);
+        }
+        day = Math.min(day, lengthOfMonth(year, month));
+        long epochDay = toEpochDay(year, month, day);
+        if (hour == 24) {
+            hour = 0;
+            epochDay++;
+            if (day == lengthOfMonth(year, month)) {
+                day = 1;
+                if (++month > 12) {
+                    month = 1;
+                    year++;
+                }
+            } else {
+                day++;
+            }
+        }
+        return new ParsedTimestamp(year, month, day, hour, minute, second, micros, epochDay * 86_400 + hour * 3600 + minute * 60 + second);
+    }
+
+    /**
+     * @return the day in the form used in the PartitionKey, {@code year-month-day} without zero padding
+     */
+    public static String formatDay(int year, int month, int day) {
+        return year + "-" + month + "-" + day;
+    }
+
+    private static int readNumber(String timestamp, int from, int digits) {
+        int value = 0;
+        for (int index = from; index < from + digits; index++) {
+            char character = timestamp.charAt(index);
+            if (character < '0' || character > '9') {
+                throw error(timestamp, index);
+            }
+            value = value * 10 + (character - '0');
+        }
+        return value;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Days from 1970-01-01 of a date of the proleptic Gregorian calendar, with the same algorithm of {@code LocalDate.toEpochDay}.
+     */
+    private static long toEpochDay(int year, int month, int day) {
+        long total = 365L * year;
+        total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367L * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - 719_528;
+    }
+
+    private static DateTimeParseException error(String timestamp, int index) {
+        return new DateTimeParseException("Text '" + timestamp + "' could not be parsed as faultBean timestamp at index " + index, timestamp, index);
+    }
+
+    public static class ParsedTimestamp {
+
+        private final int year;
+
+        private final int month;
+
+        private final int day;
+
+        private final int hour;
+
+        private final int minute;
+
+        private final int second;
+
+        private final int micros;
+
+        private final long epochSecond;
+
+        private ParsedTimestamp(int year, int month, int day, int hour, int minute, int second, int micros, long epochSecond) {
+            this.year = year;
+            this.month = month;
+            this.day = day;
+            this.hour = hour;
+            this.minute = minute;
+            this.second = second;
+            this.micros = micros;
+            this.epochSecond = epochSecond;
+        }
+
+        /**
+         * @return the seconds from the epoch, considering the timestamp in UTC
+         */
+        public long getEpochSecond() {
+            return epochSecond;
+        }
+
+        public LocalDateTime toLocalDateTime() {
+            return LocalDateTime.of(year, month, day, hour, minute, second, micros * 1000);
+        }
+    }
+}
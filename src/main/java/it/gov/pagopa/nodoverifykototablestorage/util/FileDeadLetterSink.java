@@ -0,0 +1,63 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import it.gov.pagopa.nodoverifykototablestorage.model.DeadLetterEntry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Spools each entry as a JSON file of a local directory, used by tests and local runs.
+ */
+public class FileDeadLetterSink implements DeadLetterSink {
+
+    private static final String EXTENSION = ".json";
+
+    private final Path directory;
+
+    public FileDeadLetterSink(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public void spool(DeadLetterEntry entry) throws IOException {
+        Files.createDirectories(directory);
+        // written on a temporary file and then moved, so that a partially written entry is never listed
+        Path temporaryFile = Files.createTempFile(directory, entry.getId(), ".tmp");
+        Files.write(temporaryFile, ObjectMapperUtils.writeValueAsBytes(entry));
+        Files.move(temporaryFile, getFile(entry.getId()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public List<String> list(int maxEntries) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(EXTENSION))
+                    .map(name -> name.substring(0, name.length() - EXTENSION.length()))
+                    .sorted()
+                    .limit(maxEntries)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public DeadLetterEntry read(String id) throws IOException {
+        return ObjectMapperUtils.readValue(Files.readAllBytes(getFile(id)), DeadLetterEntry.class);
+    }
+
+    @Override
+    public void delete(String id) throws IOException {
+        Files.deleteIfExists(getFile(id));
+    }
+
+    private Path getFile(String id) {
+        return directory.resolve(id + EXTENSION);
+    }
+}
@@ -0,0 +1,205 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.azure.data.tables.TableClient;
+import com.azure.data.tables.models.ListEntitiesOptions;
+import com.azure.data.tables.models.TableEntity;
+import com.azure.data.tables.models.TableTransactionAction;
+import com.azure.data.tables.models.TableTransactionActionType;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Pre-aggregated counters of the KO events, by creditor institution, PSP, station (or any other identification column)
+ * and fault code, so that dashboards read a few counter rows instead of scanning the events.
+ * Each invocation accumulates its counts in memory, then merges them in the rollup table, where each day is a partition
+ * and each row counts the events of an hour, a value of a column and a fault code (i.e. RowKey {@code 08|idPA|77777777777|PPT_SYNTAX_ERROR}).
+ * The merge is an optimistic read-modify-write: the current rows are read, then updated in batched transactions
+ * conditioned on their ETag (or created if missing), and read again if another instance changed them in the meantime.
+ */
+public class KoCounterRollup {
+
+    public static final String COUNT_FIELD = "count";
+
+    public static final String DIMENSION_FIELD = "dimension";
+
+    public static final String VALUE_FIELD = "value";
+
+    public static final String HOUR_FIELD = "hour";
+
+    public static final String FAULT_CODE_FIELD = "faultCode";
+
+    private static final char KEY_SEPARATOR = '|';
+
+    // a Table Storage transaction cannot contain more than 100 actions
+    private static final int MAX_TRANSACTION_ACTIONS = 100;
+
+    private final List<String> dimensions;
+
+    private final int maxAttempts;
+
+    /**
+     * @param dimensions the columns of the events whose values are counted
+     * @param maxAttempts the max number of attempts of the merge of a transaction whose rows are changed concurrently
+     */
+    public KoCounterRollup(List<String> dimensions, int maxAttempts) {
+        this.dimensions = List.copyOf(dimensions);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * @param dimensions the comma separated columns whose values are counted
+     */
+    public static List<String> parseDimensions(String dimensions) {
+        if (dimensions == null || dimensions.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(dimensions.split(","))
+                .map(String::trim)
+                .filter(dimension -> !dimension.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    public Counts newCounts() {
+        return new Counts();
+    }
+
+    /**
+     * Merge the counts in the rollup table, adding them to the current values.
+     *
+     * @param tableClient the client of the rollup table
+     * @param counts the counts of the invocation
+     * @param limiter the limiter of the concurrent transactions
+     * @throws Exception if a transaction failed or its rows kept changing for all the attempts
+     */
+    public void merge(TableClient tableClient, Counts counts, AdaptiveConcurrencyLimiter limiter) throws Exception {
+        for (Map.Entry<String, Map<String, Long>> partition : counts.snapshot().entrySet()) {
+            List<String> rowKeys = new ArrayList<>(partition.getValue().keySet());
+            for (int from = 0; from < rowKeys.size(); from += MAX_TRANSACTION_ACTIONS) {
+                mergeTransaction(tableClient, partition.getKey(), rowKeys.subList(from, Math.min(rowKeys.size(), from + MAX_TRANSACTION_ACTIONS)), partition.getValue(), limiter);
+            }
+        }
+    }
+
+    private void mergeTransaction(TableClient tableClient, String partitionKey, List<String> rowKeys, Map<String, Long> deltas, AdaptiveConcurrencyLimiter limiter) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            Map<String, TableEntity> currentRows = readRows(tableClient, partitionKey, rowKeys);
+            List<TableTransactionAction> actions = new ArrayList<>(rowKeys.size());
+            for (String rowKey : rowKeys) {
+                TableEntity currentRow = currentRows.get(rowKey);
+                long delta = deltas.get(rowKey);
+                if (currentRow != null) {
+                    Object count = currentRow.getProperty(COUNT_FIELD);
+                    currentRow.addProperty(COUNT_FIELD, (count instanceof Number ? ((Number) count).longValue() : 0L) + delta);
+                    // the update fails if the row was changed after being read
+                    actions.add(new TableTransactionAction(TableTransactionActionType.UPDATE_MERGE, currentRow, true));
+                } else {
+                    // the creation fails if the row was created after being read
+                    actions.add(new TableTransactionAction(TableTransactionActionType.CREATE, newRow(partitionKey, rowKey, delta)));
+                }
+            }
+            try {
+                limiter.execute(() -> tableClient.submitTransaction(actions));
+                return;
+            } catch (Exception e) {
+                int statusCode = AdaptiveConcurrencyLimiter.getHttpStatusCode(e);
+                if ((statusCode != 409 && statusCode != 412) || attempt >= maxAttempts) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static Map<String, TableEntity> readRows(TableClient tableClient, String partitionKey, List<String> rowKeys) {
+        Map<String, TableEntity> rows = new HashMap<>();
+        for (int from = 0; from < rowKeys.size(); from += Constants.RETRY_REMOTE_CHECK_MAX_ROW_KEYS_PER_QUERY) {
+            String rowKeysFilter = rowKeys.subList(from, Math.min(rowKeys.size(), from + Constants.RETRY_REMOTE_CHECK_MAX_ROW_KEYS_PER_QUERY)).stream()
+                    .map(rowKey -> String.format("RowKey eq '%s'", rowKey.replace("'", "''")))
+                    .collect(Collectors.joining(" or "));
+            ListEntitiesOptions options = new ListEntitiesOptions()
+                    .setFilter(String.format("PartitionKey eq '%s' and (%s)", partitionKey.replace("'", "''"), rowKeysFilter))
+                    .setSelect(List.of(COUNT_FIELD));
+            tableClient.listEntities(options, null, null).forEach(row -> rows.put(row.getRowKey(), row));
+        }
+        return rows;
+    }
+
+    private static TableEntity newRow(String partitionKey, String rowKey, long count) {
+        String[] parts = rowKey.split("\\" + KEY_SEPARATOR, 4);
+        return new TableEntity(partitionKey, rowKey)
+                .addProperty(HOUR_FIELD, Integer.parseInt(parts[0]))
+                .addProperty(DIMENSION_FIELD, parts[1])
+                .addProperty(VALUE_FIELD, parts[2])
+                .addProperty(FAULT_CODE_FIELD, parts[3])
+                .addProperty(COUNT_FIELD, count);
+    }
+
+    static boolean isValidKeyPart(String value) {
+        // characters not allowed in the keys of Table Storage, and the separator of the parts of the RowKey
+        return !value.isEmpty() && value.chars().noneMatch(character -> character == '/' || character == '\\' || character == '#' || character == '?'
+                || character == KEY_SEPARATOR || Character.isISOControl(character));
+    }
+
+    /**
+     * Counts of the events of an invocation, safe for concurrent use.
+     */
+    public class Counts {
+
+        private final Map<String, Map<String, LongAdder>> countsByPartition = new ConcurrentHashMap<>();
+
+        private final LongAdder events = new LongAdder();
+
+        /**
+         * @param event the columns of a saved event
+         */
+        public void add(Map<String, Object> event) {
+            Object dateTime = event.get(Constants.DATE_TIME_EVENT_FIELD);
+            if (!(dateTime instanceof LocalDateTime)) {
+                return;
+            }
+            String partitionKey = PartitionKeyStrategy.getDay(((LocalDateTime) dateTime).toLocalDate());
+            int hour = ((LocalDateTime) dateTime).getHour();
+            String faultCode = String.valueOf(event.getOrDefault(Constants.FAULT_CODE_TABLESTORAGE_EVENT_FIELD, Constants.NA));
+            if (!isValidKeyPart(faultCode)) {
+                faultCode = Constants.NA;
+            }
+            Map<String, LongAdder> partitionCounts = countsByPartition.computeIfAbsent(partitionKey, key -> new ConcurrentHashMap<>());
+            for (String dimension : dimensions) {
+                String value = String.valueOf(event.getOrDefault(dimension, Constants.NA));
+                if (isValidKeyPart(value)) {
+                    String rowKey = String.format("%02d%c%s%c%s%c%s", hour, KEY_SEPARATOR, dimension, KEY_SEPARATOR, value, KEY_SEPARATOR, faultCode);
+                    partitionCounts.computeIfAbsent(rowKey, key -> new LongAdder()).increment();
+                }
+            }
+            events.increment();
+        }
+
+        /**
+         * @return the number of counted events
+         */
+        public int getEvents() {
+            return events.intValue();
+        }
+
+        /**
+         * @return the counts of each row, grouped by PartitionKey
+         */
+        public Map<String, Map<String, Long>> snapshot() {
+            Map<String, Map<String, Long>> snapshot = new HashMap<>();
+            countsByPartition.forEach((partitionKey, partitionCounts) -> {
+                Map<String, Long> rows = new HashMap<>();
+                partitionCounts.forEach((rowKey, count) -> rows.put(rowKey, count.sum()));
+                snapshot.put(partitionKey, rows);
+            });
+            return snapshot;
+        }
+    }
+}
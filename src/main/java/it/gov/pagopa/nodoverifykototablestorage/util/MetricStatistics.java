@@ -0,0 +1,28 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.Map;
+
+/**
+ * Statistics of a measured quantity: durations are in milliseconds, the other quantities in their own unit.
+ */
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MetricStatistics {
+
+    private long count;
+    private double total;
+    private double mean;
+    private double max;
+    private Double p50;
+    private Double p95;
+    private Double p99;
+    // number of failures by error, only for the pipeline stages
+    private Map<String, Long> failures;
+}
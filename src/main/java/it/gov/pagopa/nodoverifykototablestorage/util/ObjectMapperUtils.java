@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.modelmapper.ModelMapper;
 import org.modelmapper.convention.MatchingStrategies;
 
+import java.io.IOException;
+
 public class ObjectMapperUtils {
 
     private static final ModelMapper modelMapper;
@@ -31,4 +33,16 @@ public class ObjectMapperUtils {
     public static <D> D readValue(String string,Class<D> clazz) throws JsonProcessingException {
         return objectMapper.readValue(string,clazz);
     }
+
+    public static <D> D readValue(byte[] bytes,Class<D> clazz) throws IOException {
+        return objectMapper.readValue(bytes,clazz);
+    }
+
+    public static String writeValueAsString(Object value) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    public static byte[] writeValueAsBytes(Object value) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(value);
+    }
 }
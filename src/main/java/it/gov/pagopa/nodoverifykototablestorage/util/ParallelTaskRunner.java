@@ -0,0 +1,193 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the same I/O task over a list of items on a bounded pool of worker threads,
+ * waiting for every task to complete before returning the failures in input order.
+ * On a Java 21 runtime the tasks can run on virtual threads, bounding only the number of tasks in flight.
+ */
+public class ParallelTaskRunner {
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    private final Semaphore inFlightPermits;
+
+    public ParallelTaskRunner(String name, int parallelism) {
+        this(name, parallelism, false);
+    }
+
+    /**
+     * @param name the name of the worker threads
+     * @param parallelism the max number of tasks executed concurrently
+     * @param virtualThreads true to run the tasks on virtual threads, ignored if the runtime does not support them
+     */
+    public ParallelTaskRunner(String name, int parallelism, boolean virtualThreads) {
+        this.parallelism = Math.max(1, parallelism);
+        ExecutorService virtualThreadExecutor = virtualThreads && this.parallelism > 1 ? newVirtualThreadPerTaskExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            this.executor = virtualThreadExecutor;
+            this.inFlightPermits = new Semaphore(this.parallelism);
+        } else {
+            this.executor = this.parallelism > 1 ? Executors.newFixedThreadPool(this.parallelism, new NamedDaemonThreadFactory(name)) : null;
+            this.inFlightPermits = null;
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return true if the tasks are executed on virtual threads
+     */
+    public boolean isVirtual() {
+        return inFlightPermits != null;
+    }
+
+    /**
+     * @return true if the runtime supports virtual threads
+     */
+    public static boolean isVirtualThreadSupported() {
+        return getVirtualThreadExecutorFactory() != null;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method factory = getVirtualThreadExecutorFactory();
+        try {
+            return factory != null ? (ExecutorService) factory.invoke(null) : null;
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static Method getVirtualThreadExecutorFactory() {
+        // resolved by reflection, so that the same build runs also on the Java 11 runtime
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Execute the task on each item, using at most {@code parallelism} concurrent threads.
+     * The method returns only when all tasks are terminated, so that no task is left in flight.
+     *
+     * @param items the items on which the task must be executed
+     * @param task the task to execute
+     * @return the list of failed items with their cause, in the same order of the input list
+     */
+    public <T> List<TaskFailure<T>> runAll(List<T> items, ThrowingConsumer<T> task) {
+        List<TaskFailure<T>> failures = new ArrayList<>();
+        if (executor == null || items.size() <= 1) {
+            for (T item : items) {
+                try {
+                    task.accept(item);
+                } catch (Exception e) {
+                    failures.add(new TaskFailure<>(item, e));
+                }
+            }
+            return failures;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(items.size());
+        InterruptedException interruption = null;
+        for (int index = 0; index < items.size(); index++) {
+            T item = items.get(index);
+            if (inFlightPermits == null) {
+                futures.add(executor.submit(() -> {
+                    task.accept(item);
+                    return null;
+                }));
+                continue;
+            }
+            // a virtual thread is started only when a permit is free, so at most parallelism requests are in flight
+            try {
+                inFlightPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                interruption = e;
+                break;
+            }
+            futures.add(executor.submit(() -> {
+                try {
+                    task.accept(item);
+                    return null;
+                } finally {
+                    inFlightPermits.release();
+                }
+            }));
+        }
+        for (int index = 0; index < futures.size(); index++) {
+            try {
+                futures.get(index).get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                failures.add(new TaskFailure<>(items.get(index), cause instanceof Exception ? (Exception) cause : new IllegalStateException(cause)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.add(new TaskFailure<>(items.get(index), e));
+            }
+        }
+        // the items not submitted because of an interruption are reported as failed
+        for (int index = futures.size(); interruption != null && index < items.size(); index++) {
+            failures.add(new TaskFailure<>(items.get(index), interruption));
+        }
+        return failures;
+    }
+
+    @FunctionalInterface
+    public interface ThrowingConsumer<T> {
+        void accept(T item) throws Exception;
+    }
+
+    public static class TaskFailure<T> {
+
+        private final T item;
+
+        private final Exception cause;
+
+        public TaskFailure(T item, Exception cause) {
+            this.item = item;
+            this.cause = cause;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public Exception getCause() {
+            return cause;
+        }
+    }
+
+    private static class NamedDaemonThreadFactory implements ThreadFactory {
+
+        private final String name;
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        NamedDaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "verifyko-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strategies for the generation of the PartitionKey of the events saved in Table Storage.
+ * Every strategy starts the PartitionKey with the day of the event ({@code year-month-day}, without zero padding),
+ * optionally followed by {@link #SEPARATOR} and a suffix that spreads the events of the same day over more partitions.
+ * So, all the partitions of a day can always be read either by enumerating them with {@link #getPartitionKeys(LocalDate, int)}
+ * or with the range filter returned by {@link #getDayRangeFilter(LocalDate)}.
+ */
+public enum PartitionKeyStrategy {
+
+    /**
+     * A single partition per day, i.e. {@code 2023-12-12}.
+     */
+    DAY {
+        @Override
+        String getSuffix(LocalDateTime dateTime, Map<String, Object> event, int buckets) {
+            return null;
+        }
+
+        @Override
+        List<String> getSuffixes(int buckets) {
+            return List.of();
+        }
+    },
+
+    /**
+     * A partition per hour of the day, i.e. {@code 2023-12-12_18}.
+     */
+    DAY_HOUR {
+        @Override
+        String getSuffix(LocalDateTime dateTime, Map<String, Object> event, int buckets) {
+            return formatTwoDigits(dateTime.getHour());
+        }
+
+        @Override
+        List<String> getSuffixes(int buckets) {
+            return generateSuffixes(24);
+        }
+
+        @Override
+        List<String> getSuffixes(LocalDateTime from, LocalDateTime last, Map<String, Object> columns, int buckets) {
+            return generateSuffixes(24).subList(from.getHour(), last.getHour() + 1);
+        }
+    },
+
+    /**
+     * A fixed number of partitions per day, chosen by hashing the creditor institution, i.e. {@code 2023-12-12_07}.
+     */
+    DAY_CREDITOR_BUCKET {
+        @Override
+        String getSuffix(LocalDateTime dateTime, Map<String, Object> event, int buckets) {
+            return getBucket(event.get(Constants.ID_PA_TABLESTORAGE_EVENT_FIELD), buckets);
+        }
+
+        @Override
+        List<String> getSuffixes(int buckets) {
+            return generateSuffixes(buckets);
+        }
+
+        @Override
+        List<String> getSuffixes(LocalDateTime from, LocalDateTime last, Map<String, Object> columns, int buckets) {
+            Object idPA = columns.get(Constants.ID_PA_TABLESTORAGE_EVENT_FIELD);
+            return idPA != null ? List.of(getBucket(idPA, buckets)) : generateSuffixes(buckets);
+        }
+    },
+
+    /**
+     * A fixed number of partitions per day, chosen by hashing the PSP, i.e. {@code 2023-12-12_07}.
+     */
+    DAY_PSP_BUCKET {
+        @Override
+        String getSuffix(LocalDateTime dateTime, Map<String, Object> event, int buckets) {
+            return getBucket(event.get(Constants.ID_PSP_TABLESTORAGE_EVENT_FIELD), buckets);
+        }
+
+        @Override
+        List<String> getSuffixes(int buckets) {
+            return generateSuffixes(buckets);
+        }
+
+        @Override
+        List<String> getSuffixes(LocalDateTime from, LocalDateTime last, Map<String, Object> columns, int buckets) {
+            Object idPsp = columns.get(Constants.ID_PSP_TABLESTORAGE_EVENT_FIELD);
+            return idPsp != null ? List.of(getBucket(idPsp, buckets)) : generateSuffixes(buckets);
+        }
+    },
+
+    /**
+     * A fixed number of partitions per day, chosen by hashing the RowKey of the event, i.e. {@code 2023-12-12_07}.
+     */
+    DAY_ROW_BUCKET {
+        @Override
+        String getSuffix(LocalDateTime dateTime, Map<String, Object> event, int buckets) {
+            return getBucket(event.get(Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD), buckets);
+        }
+
+        @Override
+        List<String> getSuffixes(int buckets) {
+            return generateSuffixes(buckets);
+        }
+    };
+
+    public static final char SEPARATOR = '_';
+
+    public static final int MAX_BUCKETS = 100;
+
+    abstract String getSuffix(LocalDateTime dateTime, Map<String, Object> event, int buckets);
+
+    abstract List<String> getSuffixes(int buckets);
+
+    /**
+     * @param from the first instant of the range in a day
+     * @param last the last instant of the range in the same day
+     * @param columns the known values of the columns of the searched events
+     * @param buckets the number of partitions per day used by the bucket strategies
+     * @return the suffixes of the partitions of the day that can contain the searched events
+     */
+    List<String> getSuffixes(LocalDateTime from, LocalDateTime last, Map<String, Object> columns, int buckets) {
+        return getSuffixes(buckets);
+    }
+
+    /**
+     * @param dateTime the date of the event
+     * @param event the columns of the event to be saved, used by the bucket strategies
+     * @param buckets the number of partitions per day used by the bucket strategies
+     * @return the PartitionKey of the event
+     */
+    public String getPartitionKey(LocalDateTime dateTime, Map<String, Object> event, int buckets) {
+        String day = getDay(dateTime.toLocalDate());
+        String suffix = getSuffix(dateTime, event, normalizeBuckets(buckets));
+        return suffix == null ? day : day + SEPARATOR + suffix;
+    }
+
+    /**
+     * @param day the day to read
+     * @param buckets the number of partitions per day used by the bucket strategies
+     * @return all the PartitionKey values that can be generated for the passed day
+     */
+    public List<String> getPartitionKeys(LocalDate day, int buckets) {
+        String dayValue = getDay(day);
+        List<String> suffixes = getSuffixes(normalizeBuckets(buckets));
+        if (suffixes.isEmpty()) {
+            return List.of(dayValue);
+        }
+        List<String> partitionKeys = new ArrayList<>(suffixes.size());
+        suffixes.forEach(suffix -> partitionKeys.add(dayValue + SEPARATOR + suffix));
+        return partitionKeys;
+    }
+
+    /**
+     * @param from the start of the time range to read, inclusive
+     * @param to the end of the time range to read, exclusive
+     * @param columns the known values of the columns of the searched events (i.e. idPA), used to skip the partitions
+     *                that cannot contain them
+     * @param buckets the number of partitions per day used by the bucket strategies
+     * @return the PartitionKey values that can contain the searched events, in chronological order
+     */
+    public List<String> getPartitionKeys(LocalDateTime from, LocalDateTime to, Map<String, Object> columns, int buckets) {
+        List<String> partitionKeys = new ArrayList<>();
+        if (!to.isAfter(from)) {
+            return partitionKeys;
+        }
+        LocalDateTime last = to.minusNanos(1);
+        for (LocalDate day = from.toLocalDate(); !day.isAfter(last.toLocalDate()); day = day.plusDays(1)) {
+            LocalDateTime dayFrom = day.equals(from.toLocalDate()) ? from : day.atStartOfDay();
+            LocalDateTime dayLast = day.equals(last.toLocalDate()) ? last : day.atTime(LocalTime.MAX);
+            String dayValue = getDay(day);
+            List<String> suffixes = getSuffixes(dayFrom, dayLast, columns, normalizeBuckets(buckets));
+            if (suffixes.isEmpty()) {
+                partitionKeys.add(dayValue);
+            } else {
+                suffixes.forEach(suffix -> partitionKeys.add(dayValue + SEPARATOR + suffix));
+            }
+        }
+        return partitionKeys;
+    }
+
+    /**
+     * @param day the day to read
+     * @return a Table Storage filter selecting all the partitions of the day, whatever strategy generated them
+     */
+    public static String getDayRangeFilter(LocalDate day) {
+        String dayValue = getDay(day);
+        return String.format("(PartitionKey eq '%1$s' or (PartitionKey ge '%1$s%2$c' and PartitionKey lt '%1$s%3$c'))", dayValue, SEPARATOR, (char) (SEPARATOR + 1));
+    }
+
+    public static String getDay(LocalDate day) {
+        return FaultBeanTimestampCodec.formatDay(day.getYear(), day.getMonthValue(), day.getDayOfMonth());
+    }
+
+    private static int normalizeBuckets(int buckets) {
+        return Math.max(1, Math.min(buckets, MAX_BUCKETS));
+    }
+
+    private static String getBucket(Object value, int buckets) {
+        // String.hashCode is specified by the language, so the bucket of a value is stable across instances and releases
+        int hash = value == null ? 0 : value.toString().hashCode();
+        return formatTwoDigits(Math.floorMod(hash, buckets));
+    }
+
+    private static List<String> generateSuffixes(int count) {
+        List<String> suffixes = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            suffixes.add(formatTwoDigits(index));
+        }
+        return suffixes;
+    }
+
+    private static String formatTwoDigits(int value) {
+        return value < 10 ? "0" + value : String.valueOf(value);
+    }
+}
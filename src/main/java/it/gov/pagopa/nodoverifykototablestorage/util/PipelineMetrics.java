@@ -0,0 +1,212 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects the latency of each {@link PipelineStage}, the size of the batches, transactions and blobs,
+ * the number of processed events and the current concurrency limits of the storage operations.
+ * The metrics are kept in a local registry, read by the Metrics HTTP function, and are also published
+ * on the Micrometer global registry, from which the Application Insights agent exports them as custom metrics.
+ */
+public class PipelineMetrics {
+
+    public static final String STAGE_DURATION = "verifyko.stage.duration";
+    public static final String STAGE_FAILURES = "verifyko.stage.failures";
+    public static final String BATCH_SIZE = "verifyko.batch.size";
+    public static final String TRANSACTION_SIZE = "verifyko.transaction.size";
+    public static final String BLOB_BYTES = "verifyko.blob.bytes";
+    public static final String EVENTS = "verifyko.events";
+    public static final String CONCURRENCY_LIMIT = "verifyko.concurrency.limit";
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private static final PipelineMetrics DEFAULT = new PipelineMetrics(Metrics.globalRegistry);
+
+    private final SimpleMeterRegistry localRegistry = new SimpleMeterRegistry();
+
+    private final MeterRegistry registry;
+
+    private final Map<PipelineStage, Timer> stageTimers = new EnumMap<>(PipelineStage.class);
+
+    private final DistributionSummary batchSize;
+
+    private final DistributionSummary transactionSize;
+
+    private final DistributionSummary blobBytes;
+
+    /**
+     * @param exportRegistry the registry on which the metrics are also published, null to keep them only locally
+     */
+    public PipelineMetrics(MeterRegistry exportRegistry) {
+        CompositeMeterRegistry compositeRegistry = new CompositeMeterRegistry();
+        compositeRegistry.add(localRegistry);
+        if (exportRegistry != null) {
+            compositeRegistry.add(exportRegistry);
+        }
+        this.registry = compositeRegistry;
+        for (PipelineStage stage : PipelineStage.values()) {
+            stageTimers.put(stage, Timer.builder(STAGE_DURATION)
+                    .tag("stage", stage.getTag())
+                    .publishPercentiles(PERCENTILES)
+                    .register(registry));
+        }
+        this.batchSize = summary(BATCH_SIZE, "events");
+        this.transactionSize = summary(TRANSACTION_SIZE, "actions");
+        this.blobBytes = summary(BLOB_BYTES, "bytes");
+    }
+
+    /**
+     * @return the metrics shared by all the functions of the application
+     */
+    public static PipelineMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    public void recordSuccess(PipelineStage stage, long startNanos) {
+        stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordFailure(PipelineStage stage, Throwable error) {
+        Counter.builder(STAGE_FAILURES)
+                .tag("stage", stage.getTag())
+                .tag("error", getErrorTag(error))
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Measure the duration of an asynchronous operation, from its subscription to its completion.
+     */
+    public <T> Mono<T> record(PipelineStage stage, Mono<T> operation) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return operation
+                    .doOnSuccess(result -> recordSuccess(stage, start))
+                    .doOnError(error -> recordFailure(stage, error));
+        });
+    }
+
+    public void recordBatchSize(int events) {
+        batchSize.record(events);
+    }
+
+    public void recordTransactionSize(int actions) {
+        transactionSize.record(actions);
+    }
+
+    public void recordBlobBytes(long bytes) {
+        blobBytes.record(bytes);
+    }
+
+    /**
+     * Publish the current limit of an adaptive limiter, the limiter is kept alive by the registry.
+     */
+    public void registerConcurrencyLimit(AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder(CONCURRENCY_LIMIT, limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("operation", limiter.getName())
+                .strongReference(true)
+                .register(registry);
+    }
+
+    /**
+     * @param outcome the outcome of the events, i.e. persisted, failed or skipped
+     * @param count the number of events
+     */
+    public void recordEvents(String outcome, int count) {
+        if (count > 0) {
+            Counter.builder(EVENTS).tag("outcome", outcome).register(registry).increment(count);
+        }
+    }
+
+    /**
+     * @return the statistics collected since the application start, percentiles are related to the last minutes
+     */
+    public PipelineMetricsReport getReport() {
+        Map<String, MetricStatistics> stages = new TreeMap<>();
+        for (PipelineStage stage : PipelineStage.values()) {
+            Map<String, Long> failures = new TreeMap<>();
+            localRegistry.find(STAGE_FAILURES).tag("stage", stage.getTag()).counters()
+                    .forEach(counter -> failures.merge(counter.getId().getTag("error"), (long) counter.count(), Long::sum));
+            Timer timer = localRegistry.find(STAGE_DURATION).tag("stage", stage.getTag()).timer();
+            HistogramSnapshot snapshot = timer != null ? timer.takeSnapshot() : HistogramSnapshot.empty(0, 0, 0);
+            stages.put(stage.getTag(), toStatistics(snapshot, value -> value.value(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS)
+                    .failures(failures)
+                    .build());
+        }
+
+        Map<String, MetricStatistics> distributions = new TreeMap<>();
+        for (String name : new String[]{BATCH_SIZE, TRANSACTION_SIZE, BLOB_BYTES}) {
+            DistributionSummary summary = localRegistry.find(name).summary();
+            if (summary != null) {
+                distributions.put(name, toStatistics(summary.takeSnapshot(), ValueAtPercentile::value, null).build());
+            }
+        }
+
+        Map<String, Long> events = new TreeMap<>();
+        localRegistry.find(EVENTS).counters().forEach(counter -> events.put(counter.getId().getTag("outcome"), (long) counter.count()));
+
+        Map<String, Integer> concurrencyLimits = new TreeMap<>();
+        localRegistry.find(CONCURRENCY_LIMIT).gauges().forEach(gauge -> concurrencyLimits.put(gauge.getId().getTag("operation"), (int) gauge.value()));
+
+        return PipelineMetricsReport.builder()
+                .stages(stages)
+                .distributions(distributions)
+                .events(events)
+                .concurrencyLimits(concurrencyLimits)
+                .build();
+    }
+
+    private DistributionSummary summary(String name, String unit) {
+        return DistributionSummary.builder(name)
+                .baseUnit(unit)
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    private static MetricStatistics.MetricStatisticsBuilder toStatistics(HistogramSnapshot snapshot, Function<ValueAtPercentile, Double> percentileValue, TimeUnit unit) {
+        MetricStatistics.MetricStatisticsBuilder statistics = MetricStatistics.builder()
+                .count(snapshot.count())
+                .total(unit != null ? snapshot.total(unit) : snapshot.total())
+                .mean(unit != null ? snapshot.mean(unit) : snapshot.mean())
+                .max(unit != null ? snapshot.max(unit) : snapshot.max());
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == 0.5) {
+                statistics.p50(percentileValue.apply(value));
+            } else if (value.percentile() == 0.95) {
+                statistics.p95(percentileValue.apply(value));
+            } else if (value.percentile() == 0.99) {
+                statistics.p99(percentileValue.apply(value));
+            }
+        }
+        return statistics;
+    }
+
+    private static String getErrorTag(Throwable error) {
+        // the HTTP status makes throttling (429, 503) distinguishable from the other failures
+        int statusCode = AdaptiveConcurrencyLimiter.getHttpStatusCode(error);
+        if (statusCode >= 0) {
+            return "http_" + statusCode;
+        }
+        Throwable rootCause = error;
+        while (rootCause.getCause() != null && rootCause.getCause() != rootCause) {
+            rootCause = rootCause.getCause();
+        }
+        return rootCause.getClass().getSimpleName();
+    }
+}
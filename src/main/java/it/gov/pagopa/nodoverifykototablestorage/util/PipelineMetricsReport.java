@@ -0,0 +1,20 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.Map;
+
+@Getter
+@Builder(toBuilder = true)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PipelineMetricsReport {
+
+    private Map<String, MetricStatistics> stages;
+    private Map<String, MetricStatistics> distributions;
+    private Map<String, Long> events;
+    private Map<String, Integer> concurrencyLimits;
+}
@@ -0,0 +1,39 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+/**
+ * Stages of the event ingestion pipeline whose duration is measured.
+ */
+public enum PipelineStage {
+
+    /**
+     * Extraction of the indexed fields from the JSON of an event.
+     */
+    EVENT_PARSE,
+
+    /**
+     * Parsing and normalization of the faultBean timestamp of an event.
+     */
+    TIMESTAMP_NORMALIZATION,
+
+    /**
+     * Upload of a blob (an event body or a segment) on Blob Storage.
+     */
+    BLOB_UPLOAD,
+
+    /**
+     * Submission of a transaction of a partition on Table Storage.
+     */
+    TABLE_TRANSACTION,
+
+    /**
+     * Submission of a transaction of a partition of a lookup index table on Table Storage.
+     */
+    INDEX_TRANSACTION;
+
+    /**
+     * @return the value of the stage tag of the related metrics
+     */
+    public String getTag() {
+        return name().toLowerCase();
+    }
+}
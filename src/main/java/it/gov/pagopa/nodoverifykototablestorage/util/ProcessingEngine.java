@@ -0,0 +1,17 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+/**
+ * Engine used to persist the events of an invocation.
+ */
+public enum ProcessingEngine {
+
+    /**
+     * Synchronous storage clients, with the blob uploads and the table transactions executed on bounded thread pools.
+     */
+    BLOCKING,
+
+    /**
+     * Asynchronous storage clients, with parsing, blob uploads and table transactions chained in a single Reactor pipeline.
+     */
+    REACTIVE
+}
@@ -0,0 +1,46 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+
+/**
+ * Converts the names of the Event Hub properties from dash-separated to camel case (i.e. {@code prop-with-dash} to {@code propWithDash}).
+ * The set of property names is small and repeated on every event, so the converted names are cached: after the warmup,
+ * a name is converted with a single lookup, without any regex or allocation.
+ * The cache is bounded, names exceeding its capacity are converted every time.
+ */
+public class PropertyNameNormalizer {
+
+    private final int maxEntries;
+
+    private final Map<String, String> cache = new ConcurrentHashMap<>();
+
+    public PropertyNameNormalizer(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public String normalize(String name) {
+        if (name.indexOf('-') < 0) {
+            return name;
+        }
+        String normalized = cache.get(name);
+        if (normalized == null) {
+            normalized = replaceDashWithUppercase(name);
+            if (cache.size() < maxEntries) {
+                cache.putIfAbsent(name, normalized);
+            }
+        }
+        return normalized;
+    }
+
+    static String replaceDashWithUppercase(String input) {
+        Matcher matcher = Constants.REPLACE_DASH_PATTERN.matcher(input);
+        StringBuilder builder = new StringBuilder();
+        while (matcher.find()) {
+            matcher.appendReplacement(builder, matcher.group(1).toUpperCase());
+        }
+        matcher.appendTail(builder);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.azure.data.tables.models.TableEntity;
+import com.azure.data.tables.models.TableTransactionAction;
+import com.azure.data.tables.models.TableTransactionActionType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index of the saved events on one of their identification columns, kept in a dedicated table.
+ * Each row of the index table has the value of the column as PartitionKey and the RowKey of the event as RowKey,
+ * with the PartitionKey of the event as property, so that all the events of a notice, a creditor institution or a PSP
+ * are found with a single partition query and then read with point queries on the main table.
+ */
+public class SecondaryIndex {
+
+    public static final String EVENT_PARTITION_KEY_FIELD = "eventPartitionKey";
+
+    private static final List<String> SUPPORTED_FIELDS = List.of(
+            Constants.NOTICE_NUMBER_TABLESTORAGE_EVENT_FIELD,
+            Constants.ID_PA_TABLESTORAGE_EVENT_FIELD,
+            Constants.ID_PSP_TABLESTORAGE_EVENT_FIELD);
+
+    // the max size of a key of Table Storage is 1 KiB
+    private static final int MAX_KEY_LENGTH = 512;
+
+    private final String field;
+
+    private final String tableName;
+
+    public SecondaryIndex(String field, String tableName) {
+        this.field = field;
+        this.tableName = tableName;
+    }
+
+    /**
+     * @param fields the comma separated columns to be indexed, null or blank to disable the indexes
+     * @param mainTableName the name of the table of the events, the index tables are named after it (e.g. eventsByIdPA)
+     * @return the indexes, in the configured order
+     */
+    public static List<SecondaryIndex> parse(String fields, String mainTableName) {
+        if (fields == null || fields.isBlank()) {
+            return List.of();
+        }
+        Map<String, SecondaryIndex> indexes = new LinkedHashMap<>();
+        Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .forEach(field -> {
+                    if (!SUPPORTED_FIELDS.contains(field)) {
+                        throw new IllegalArgumentException("Unsupported index field [" + field + "], allowed values: " + SUPPORTED_FIELDS);
+                    }
+                    indexes.putIfAbsent(field, new SecondaryIndex(field, mainTableName + "By" + Character.toUpperCase(field.charAt(0)) + field.substring(1)));
+                });
+        return List.copyOf(indexes.values());
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @param events the entities of the events to be saved in the main table
+     * @return the index rows of the events, grouped by PartitionKey; the events without a valid value are not indexed
+     */
+    public Map<String, List<TableTransactionAction>> partition(List<Map<String, Object>> events) {
+        Map<String, List<TableTransactionAction>> partitionedEntries = new HashMap<>();
+        for (Map<String, Object> event : events) {
+            Object value = event.get(field);
+            Object rowKey = event.get(Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD);
+            if (!(value instanceof String) || !isValidKey((String) value) || !(rowKey instanceof String)) {
+                continue;
+            }
+            TableEntity entity = new TableEntity((String) value, (String) rowKey);
+            entity.addProperty(EVENT_PARTITION_KEY_FIELD, event.get(Constants.PARTITION_KEY_TABLESTORAGE_EVENT_FIELD));
+            entity.addProperty(Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD, event.get(Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD));
+            partitionedEntries.computeIfAbsent(entity.getPartitionKey(), key -> new ArrayList<>())
+                    .add(new TableTransactionAction(TableTransactionActionType.UPSERT_REPLACE, entity));
+        }
+        return partitionedEntries;
+    }
+
+    static boolean isValidKey(String value) {
+        if (value.isBlank() || Constants.NA.equals(value) || value.length() > MAX_KEY_LENGTH) {
+            return false;
+        }
+        // characters not allowed in the keys of Table Storage
+        return value.chars().noneMatch(character -> character == '/' || character == '\\' || character == '#' || character == '?' || Character.isISOControl(character));
+    }
+}
@@ -0,0 +1,260 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.azure.core.http.HttpClient;
+import com.azure.core.http.netty.NettyAsyncHttpClientBuilder;
+import com.azure.data.tables.TableAsyncClient;
+import com.azure.data.tables.TableClient;
+import com.azure.data.tables.TableServiceAsyncClient;
+import com.azure.data.tables.TableServiceClient;
+import com.azure.data.tables.TableServiceClientBuilder;
+import com.azure.data.tables.models.ListEntitiesOptions;
+import com.azure.storage.blob.BlobContainerAsyncClient;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.BlobServiceAsyncClient;
+import com.azure.storage.blob.BlobServiceClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the Table Storage and Blob Storage clients exactly once, even when invocations run concurrently,
+ * sharing among all of them a single HTTP client with a tuned connection pool.
+ * The table and the container are created, if missing, only when the related client is initialized.
+ * The clients of the additional tables of the same account (e.g. the lookup indexes) are cached by table name.
+ * If the initialization fails, it is attempted again on the next request of the client.
+ */
+public class StorageClientProvider {
+
+    private static final Logger LOGGER = Logger.getLogger(StorageClientProvider.class.getName());
+
+    private final String tableConnectionString;
+
+    private final String blobConnectionString;
+
+    private final String tableName;
+
+    private final String containerName;
+
+    private final HttpClient httpClient;
+
+    private volatile TableServiceClient tableServiceClient;
+
+    private volatile BlobContainerClient blobContainerClient;
+
+    private volatile TableServiceAsyncClient tableServiceAsyncClient;
+
+    private volatile TableAsyncClient tableAsyncClient;
+
+    private volatile BlobServiceAsyncClient blobServiceAsyncClient;
+
+    private volatile BlobContainerAsyncClient blobContainerAsyncClient;
+
+    private final Map<String, TableClient> additionalTableClients = new ConcurrentHashMap<>();
+
+    private final Map<String, TableAsyncClient> additionalTableAsyncClients = new ConcurrentHashMap<>();
+
+    public StorageClientProvider(String tableConnectionString, String blobConnectionString, String tableName, String containerName, HttpClient httpClient) {
+        this.tableConnectionString = tableConnectionString;
+        this.blobConnectionString = blobConnectionString;
+        this.tableName = tableName;
+        this.containerName = containerName;
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Build the HTTP client shared by all the storage clients.
+     *
+     * @param maxConnections the max number of connections kept open towards each storage endpoint
+     * @param maxIdleTime the time after which an idle connection is closed
+     * @param connectTimeout the timeout for opening a new connection
+     * @param responseTimeout the timeout for writing a request and for receiving its response
+     * @return the HTTP client
+     */
+    public static HttpClient buildHttpClient(int maxConnections, Duration maxIdleTime, Duration connectTimeout, Duration responseTimeout) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("verifyko-storage")
+                .maxConnections(Math.max(1, maxConnections))
+                .maxIdleTime(maxIdleTime)
+                .build();
+        return new NettyAsyncHttpClientBuilder()
+                .connectionProvider(connectionProvider)
+                .connectTimeout(connectTimeout)
+                .writeTimeout(responseTimeout)
+                .responseTimeout(responseTimeout)
+                .readTimeout(responseTimeout)
+                .build();
+    }
+
+    public TableServiceClient getTableServiceClient() {
+        TableServiceClient client = tableServiceClient;
+        if (client == null) {
+            synchronized (this) {
+                client = tableServiceClient;
+                if (client == null) {
+                    client = new TableServiceClientBuilder().connectionString(tableConnectionString).httpClient(httpClient).buildClient();
+                    client.createTableIfNotExists(tableName);
+                    tableServiceClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    public BlobContainerClient getBlobContainerClient() {
+        BlobContainerClient client = blobContainerClient;
+        if (client == null) {
+            synchronized (this) {
+                client = blobContainerClient;
+                if (client == null) {
+                    BlobServiceClient blobServiceClient = new BlobServiceClientBuilder().connectionString(blobConnectionString).httpClient(httpClient).buildClient();
+                    client = blobServiceClient.createBlobContainerIfNotExists(containerName);
+                    blobContainerClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    public TableAsyncClient getTableAsyncClient() {
+        TableAsyncClient client = tableAsyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = tableAsyncClient;
+                if (client == null) {
+                    TableServiceAsyncClient serviceClient = getTableServiceAsyncClient();
+                    serviceClient.createTableIfNotExists(tableName).block();
+                    client = serviceClient.getTableClient(tableName);
+                    tableAsyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * @param name the name of an additional table of the account, created if missing on the first request of its client
+     */
+    public TableClient getTableClient(String name) {
+        TableClient client = additionalTableClients.get(name);
+        if (client == null) {
+            // computeIfAbsent does not cache the client if the creation of the table fails
+            client = additionalTableClients.computeIfAbsent(name, key -> {
+                TableServiceClient serviceClient = getTableServiceClient();
+                serviceClient.createTableIfNotExists(key);
+                return serviceClient.getTableClient(key);
+            });
+        }
+        return client;
+    }
+
+    /**
+     * @param name the name of an additional table of the account, created if missing on the first request of its client
+     */
+    public TableAsyncClient getTableAsyncClient(String name) {
+        TableAsyncClient client = additionalTableAsyncClients.get(name);
+        if (client == null) {
+            client = additionalTableAsyncClients.computeIfAbsent(name, key -> {
+                TableServiceAsyncClient serviceClient = getTableServiceAsyncClient();
+                serviceClient.createTableIfNotExists(key).block();
+                return serviceClient.getTableClient(key);
+            });
+        }
+        return client;
+    }
+
+    private TableServiceAsyncClient getTableServiceAsyncClient() {
+        TableServiceAsyncClient client = tableServiceAsyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = tableServiceAsyncClient;
+                if (client == null) {
+                    client = new TableServiceClientBuilder().connectionString(tableConnectionString).httpClient(httpClient).buildAsyncClient();
+                    tableServiceAsyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    public BlobContainerAsyncClient getBlobContainerAsyncClient() {
+        BlobContainerAsyncClient client = blobContainerAsyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = blobContainerAsyncClient;
+                if (client == null) {
+                    client = getBlobServiceAsyncClient().getBlobContainerAsyncClient(containerName);
+                    client.createIfNotExists().block();
+                    blobContainerAsyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private BlobServiceAsyncClient getBlobServiceAsyncClient() {
+        BlobServiceAsyncClient client = blobServiceAsyncClient;
+        if (client == null) {
+            synchronized (this) {
+                client = blobServiceAsyncClient;
+                if (client == null) {
+                    client = new BlobServiceClientBuilder().connectionString(blobConnectionString).httpClient(httpClient).buildAsyncClient();
+                    blobServiceAsyncClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * @return the client of the events table for read-only usages, the table is not created if missing
+     */
+    public TableAsyncClient getReadOnlyTableAsyncClient() {
+        return getTableServiceAsyncClient().getTableClient(tableName);
+    }
+
+    /**
+     * @return the client of the event bodies container for read-only usages, the container is not created if missing
+     */
+    public BlobContainerAsyncClient getReadOnlyBlobContainerAsyncClient() {
+        return getBlobServiceAsyncClient().getBlobContainerAsyncClient(containerName);
+    }
+
+    /**
+     * Initialize the clients used by the processing engine and open up to {@code connections} connections
+     * towards each storage endpoint with lightweight requests, so that the first invocation does not pay for them.
+     * Failures are only logged: the clients are initialized again on their first use.
+     *
+     * @param processingEngine the processing engine whose clients must be initialized
+     * @param connections the number of concurrent requests sent to each storage endpoint
+     */
+    public void prewarm(ProcessingEngine processingEngine, int connections) {
+        long start = System.nanoTime();
+        try {
+            if (processingEngine == ProcessingEngine.REACTIVE) {
+                getTableAsyncClient();
+                getBlobContainerAsyncClient();
+            } else {
+                getTableServiceClient();
+                getBlobContainerClient();
+            }
+            // the async clients share the same connection pool of the sync ones, so they are used to send the concurrent requests
+            TableAsyncClient tableClient = getTableAsyncClient();
+            BlobContainerAsyncClient containerClient = getBlobContainerAsyncClient();
+            ListEntitiesOptions options = new ListEntitiesOptions().setTop(1).setSelect(List.of(Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD));
+            Flux.range(0, Math.max(0, connections))
+                    .flatMap(index -> Mono.when(containerClient.exists(), tableClient.listEntities(options).take(1).then()), Math.max(1, connections))
+                    .then()
+                    .block();
+            LOGGER.log(Level.INFO, () -> String.format("Storage clients warmed up with [%d] connections in [%d] ms", connections, Duration.ofNanos(System.nanoTime() - start).toMillis()));
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, e, () -> "Could not warm up the storage clients, they will be initialized on first use: " + e.getMessage());
+        }
+    }
+}
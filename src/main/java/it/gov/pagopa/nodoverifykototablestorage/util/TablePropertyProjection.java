@@ -0,0 +1,94 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Selects and converts the Event Hub properties saved as columns of the Table Storage entity.
+ * Only the allowed properties are kept (all of them if the allow-list is empty), their values are converted to the types
+ * supported by Table Storage, and string values are truncated to a max length, so that the saved rows stay small.
+ */
+public class TablePropertyProjection {
+
+    private final Set<String> allowedProperties;
+
+    private final int maxStringLength;
+
+    /**
+     * @param allowedProperties the names of the kept properties, after their conversion to camel case; empty to keep all
+     * @param maxStringLength the max number of characters of a string value
+     */
+    public TablePropertyProjection(Set<String> allowedProperties, int maxStringLength) {
+        this.allowedProperties = Set.copyOf(allowedProperties);
+        this.maxStringLength = Math.max(1, maxStringLength);
+    }
+
+    /**
+     * @param allowList the comma separated names of the kept properties, null or blank to keep all
+     */
+    public static Set<String> parseAllowList(String allowList) {
+        if (allowList == null || allowList.isBlank()) {
+            return Collections.emptySet();
+        }
+        return Arrays.stream(allowList.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    public boolean isAllowed(String name) {
+        return allowedProperties.isEmpty() || allowedProperties.contains(name);
+    }
+
+    /**
+     * @param value the value of a property
+     * @return the value to be saved, null if the property must not be saved
+     */
+    public Object project(Object value) {
+        if (value == null) {
+            return null;
+        }
+        Object coerced = coerce(value);
+        if (coerced instanceof String && ((String) coerced).length() > maxStringLength) {
+            return ((String) coerced).substring(0, maxStringLength);
+        }
+        return coerced;
+    }
+
+    private static Object coerce(Object value) {
+        // types natively supported by Table Storage, LocalDateTime is already used by the dateTime column
+        if (value instanceof String || value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Double || value instanceof byte[] || value instanceof Date || value instanceof OffsetDateTime
+                || value instanceof LocalDateTime || value instanceof UUID) {
+            return value;
+        }
+        if (value instanceof Byte || value instanceof Short) {
+            return ((Number) value).intValue();
+        }
+        if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        }
+        if (value instanceof Instant) {
+            return ((Instant) value).atOffset(ZoneOffset.UTC);
+        }
+        if (value instanceof Number || value instanceof CharSequence || value instanceof Character || value instanceof Enum) {
+            return value.toString();
+        }
+        // structured values (i.e. maps and lists) are saved as JSON
+        try {
+            return ObjectMapperUtils.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return value.toString();
+        }
+    }
+}
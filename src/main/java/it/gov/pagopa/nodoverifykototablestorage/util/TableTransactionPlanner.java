@@ -0,0 +1,104 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import com.azure.data.tables.models.TableEntity;
+import com.azure.data.tables.models.TableTransactionAction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the actions of a single partition in chunks that can be submitted as Table Storage transactions,
+ * respecting both the limit on the number of actions and the limit on the size of the payload of a transaction.
+ * The payload size is estimated from the entity content, adding a fixed overhead for the multipart envelope of each action.
+ */
+public class TableTransactionPlanner {
+
+    public static final int MAX_ACTIONS_PER_TRANSACTION = 100;
+
+    public static final long MAX_TRANSACTION_PAYLOAD_BYTES = 4L * 1024 * 1024;
+
+    static final int ACTION_ENVELOPE_OVERHEAD_BYTES = 1024;
+
+    static final int PROPERTY_OVERHEAD_BYTES = 64;
+
+    private final int maxActions;
+
+    private final long maxPayloadBytes;
+
+    public TableTransactionPlanner(int maxActions, long maxPayloadBytes) {
+        this.maxActions = Math.max(1, Math.min(maxActions, MAX_ACTIONS_PER_TRANSACTION));
+        this.maxPayloadBytes = Math.max(1, Math.min(maxPayloadBytes, MAX_TRANSACTION_PAYLOAD_BYTES));
+    }
+
+    /**
+     * Split the actions in transactions, preserving their order.
+     * An action whose estimated size exceeds the payload limit on its own is placed in a dedicated transaction.
+     *
+     * @param actions the actions related to the same partition
+     * @return the list of transactions to be submitted
+     */
+    public List<List<TableTransactionAction>> plan(List<TableTransactionAction> actions) {
+        if (actions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<List<TableTransactionAction>> transactions = new ArrayList<>();
+        List<TableTransactionAction> current = new ArrayList<>();
+        long currentPayloadBytes = 0;
+        for (TableTransactionAction action : actions) {
+            long actionBytes = estimateSize(action);
+            if (!current.isEmpty() && (current.size() >= maxActions || currentPayloadBytes + actionBytes > maxPayloadBytes)) {
+                transactions.add(current);
+                current = new ArrayList<>();
+                currentPayloadBytes = 0;
+            }
+            current.add(action);
+            currentPayloadBytes += actionBytes;
+        }
+        transactions.add(current);
+        return transactions;
+    }
+
+    static long estimateSize(TableTransactionAction action) {
+        TableEntity entity = action.getEntity();
+        long size = ACTION_ENVELOPE_OVERHEAD_BYTES + 2L * (utf8Length(entity.getPartitionKey()) + utf8Length(entity.getRowKey()));
+        for (Map.Entry<String, Object> property : entity.getProperties().entrySet()) {
+            size += PROPERTY_OVERHEAD_BYTES + utf8Length(property.getKey()) + estimateValueSize(property.getValue());
+        }
+        return size;
+    }
+
+    private static long estimateValueSize(Object value) {
+        if (value == null) {
+            return 4;
+        }
+        if (value instanceof byte[]) {
+            // binary values are serialized in Base64
+            return 4L * ((((byte[]) value).length + 2) / 3);
+        }
+        // strings may need escaping in the JSON payload, so their size is overestimated
+        return value instanceof String ? 2L * utf8Length((String) value) : utf8Length(value.toString());
+    }
+
+    private static long utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        long length = 0;
+        for (int index = 0; index < value.length(); index++) {
+            char character = value.charAt(index);
+            if (character < 0x80) {
+                length += 1;
+            } else if (character < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(character)) {
+                length += 4;
+                index++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
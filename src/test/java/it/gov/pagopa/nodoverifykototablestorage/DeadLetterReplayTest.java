@@ -0,0 +1,108 @@
+package it.gov.pagopa.nodoverifykototablestorage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import it.gov.pagopa.nodoverifykototablestorage.model.DeadLetterEntry;
+import it.gov.pagopa.nodoverifykototablestorage.util.DeadLetterReplayReport;
+import it.gov.pagopa.nodoverifykototablestorage.util.FileDeadLetterSink;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+class DeadLetterReplayTest {
+
+    @TempDir
+    Path directory;
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void runHttpTriggerOK() throws Exception {
+        // test precondition
+        ExecutionContext context = mock(ExecutionContext.class);
+        when(context.getLogger()).thenReturn(Logger.getLogger("NodoVerifyKOEventToTableStorage-test-logger"));
+        FileDeadLetterSink sink = new FileDeadLetterSink(directory);
+        sink.spool(entry("0000000000001_invocation-1", List.of("{\"id\":\"1\"}", "{\"id\":\"2\"}")));
+        sink.spool(entry("0000000000002_invocation-2", List.of("{\"id\":\"fail\"}")));
+        sink.spool(entry("0000000000003_invocation-3", List.of("{\"id\":\"3\"}")));
+        NodoVerifyKOEventToTableStorage ingestion = mock(NodoVerifyKOEventToTableStorage.class);
+        when(ingestion.ingest(any(), any(), any(), any(), anyInt(), anyBoolean())).thenReturn(true);
+        when(ingestion.ingest(any(), any(), eq(List.of("{\"id\":\"fail\"}")), any(), anyInt(), anyBoolean())).thenReturn(false);
+
+        final HttpResponseMessage.Builder builder = mock(HttpResponseMessage.Builder.class);
+        HttpRequestMessage<Optional<String>> request = mock(HttpRequestMessage.class);
+        HttpResponseMessage responseMock = mock(HttpResponseMessage.class);
+        doReturn(HttpStatus.OK).when(responseMock).getStatus();
+        doReturn(builder).when(builder).body(any());
+        doReturn(responseMock).when(builder).build();
+        doReturn(builder).when(request).createResponseBuilder(any(HttpStatus.class));
+        doReturn(builder).when(builder).header(anyString(), anyString());
+        doReturn(Map.of("maxEntries", "2", "eventsPerSecond", "1000")).when(request).getQueryParameters();
+
+        // test execution
+        HttpResponseMessage response = new DeadLetterReplay(sink, ingestion).run(request, context);
+
+        // test assertion: the replayed entry is removed, the failed one is kept for the next replay
+        assertEquals(HttpStatus.OK, response.getStatus());
+        ArgumentCaptor<Object> bodyCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(builder).body(bodyCaptor.capture());
+        DeadLetterReplayReport report = (DeadLetterReplayReport) bodyCaptor.getValue();
+        assertEquals(1, report.getReplayedEntries());
+        assertEquals(2, report.getReplayedEvents());
+        assertTrue(report.getFailures().containsKey("0000000000002_invocation-2"));
+        assertEquals(List.of("0000000000002_invocation-2", "0000000000003_invocation-3"), sink.list(10));
+        verify(ingestion, times(2)).ingest(any(), any(), any(), any(), eq(7), eq(true));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void runHttpTriggerKO_invalidParameter() {
+        // test precondition
+        ExecutionContext context = mock(ExecutionContext.class);
+        when(context.getLogger()).thenReturn(Logger.getLogger("NodoVerifyKOEventToTableStorage-test-logger"));
+        final HttpResponseMessage.Builder builder = mock(HttpResponseMessage.Builder.class);
+        HttpRequestMessage<Optional<String>> request = mock(HttpRequestMessage.class);
+        HttpResponseMessage responseMock = mock(HttpResponseMessage.class);
+        doReturn(HttpStatus.BAD_REQUEST).when(responseMock).getStatus();
+        doReturn(builder).when(builder).body(any());
+        doReturn(responseMock).when(builder).build();
+        doReturn(builder).when(request).createResponseBuilder(any(HttpStatus.class));
+        doReturn(Map.of("eventsPerSecond", "-1")).when(request).getQueryParameters();
+
+        // test execution
+        HttpResponseMessage response = new DeadLetterReplay(new FileDeadLetterSink(directory), mock(NodoVerifyKOEventToTableStorage.class)).run(request, context);
+
+        // test assertion
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatus());
+        verify(request).createResponseBuilder(HttpStatus.BAD_REQUEST);
+    }
+
+    private static DeadLetterEntry entry(String id, List<String> events) {
+        return DeadLetterEntry.builder()
+                .id(id)
+                .invocationId(id.substring(id.indexOf('_') + 1))
+                .retryIndex(7)
+                .stage("table_transaction")
+                .error("transaction failed")
+                .failedAt("2024-01-05T08:00:00Z")
+                .events(events)
+                .properties(events.stream().map(event -> Map.<String, Object>of("prop1_without_dash", true)).collect(Collectors.toList()))
+                .build();
+    }
+}
@@ -0,0 +1,213 @@
+package it.gov.pagopa.nodoverifykototablestorage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import com.azure.core.http.rest.PagedFlux;
+import com.azure.core.http.rest.PagedResponse;
+import com.azure.core.http.rest.PagedResponseBase;
+import com.azure.core.util.BinaryData;
+import com.azure.data.tables.TableAsyncClient;
+import com.azure.data.tables.models.ListEntitiesOptions;
+import com.azure.data.tables.models.TableEntity;
+import com.azure.storage.blob.BlobAsyncClient;
+import com.azure.storage.blob.BlobContainerAsyncClient;
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import it.gov.pagopa.nodoverifykototablestorage.model.EventQueryCriteria;
+import it.gov.pagopa.nodoverifykototablestorage.util.BodyCompression;
+import it.gov.pagopa.nodoverifykototablestorage.util.EventQueryPage;
+import it.gov.pagopa.nodoverifykototablestorage.util.EventQueryToken;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Mono;
+
+class EventQueryTest {
+
+    private static final List<TableEntity> ENTITIES = List.of(
+            entity("2024-1-5", "a-1704412800", "77777777777"),
+            entity("2024-1-5", "b-1704412900", "77777777777"),
+            entity("2024-1-5", "c-1704413000", "77777777777"),
+            entity("2024-1-6", "d-1704499200", "77777777777"),
+            entity("2024-1-6", "e-1704499300", "77777777777"));
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void runHttpTriggerOK_pagedAcrossPartitions() {
+        // test precondition
+        ExecutionContext context = mock(ExecutionContext.class);
+        when(context.getLogger()).thenReturn(Logger.getLogger("NodoVerifyKOEventToTableStorage-test-logger"));
+        TableAsyncClient tableClient = mockTableClient();
+        EventQuery function = new EventQuery(() -> tableClient, () -> mock(BlobContainerAsyncClient.class));
+
+        // test execution: the first page takes all the events of the first partition and one of the second
+        EventQueryPage firstPage = run(function, context, Map.of("from", "2024-01-05T00:00:00", "to", "2024-01-07T00:00:00", "idPA", "77777777777", "pageSize", "4"));
+        EventQueryPage secondPage = run(function, context, Map.of("from", "2024-01-05T00:00:00", "to", "2024-01-07T00:00:00", "idPA", "77777777777", "pageSize", "4",
+                "continuationToken", firstPage.getContinuationToken()));
+
+        // test assertion
+        assertEquals(List.of("a-1704412800", "b-1704412900", "c-1704413000", "d-1704499200"), getRowKeys(firstPage));
+        assertNotNull(firstPage.getContinuationToken());
+        assertEquals(List.of("e-1704499300"), getRowKeys(secondPage));
+        assertNull(secondPage.getContinuationToken());
+        ArgumentCaptor<ListEntitiesOptions> optionsCaptor = ArgumentCaptor.forClass(ListEntitiesOptions.class);
+        verify(tableClient, times(3)).listEntities(optionsCaptor.capture());
+        assertEquals("PartitionKey eq '2024-1-6' and RowKey ge 'e-1704499300' and timestamp ge 1704412800L and timestamp lt 1704585600L and idPA eq '77777777777'",
+                optionsCaptor.getAllValues().get(2).getFilter());
+        assertTrue(optionsCaptor.getValue().getSelect().contains("blobBodyRef"));
+    }
+
+    @Test
+    void query_bodiesResolved() throws Exception {
+        // test precondition
+        TableAsyncClient tableClient = mockTableClient();
+        BlobContainerAsyncClient containerClient = mock(BlobContainerAsyncClient.class);
+        BlobAsyncClient blobClient = mock(BlobAsyncClient.class);
+        when(containerClient.getBlobAsyncClient(anyString())).thenReturn(blobClient);
+        when(blobClient.downloadContent()).thenReturn(Mono.just(BinaryData.fromBytes(BodyCompression.GZIP.compress("{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8)))));
+        EventQueryCriteria criteria = EventQuery.parseCriteria(Map.of("from", "2024-01-05T00:00:00", "to", "2024-01-06T00:00:00", "includeBody", "true"));
+
+        // test execution
+        EventQueryPage page = new EventQuery(() -> tableClient, () -> containerClient).query(criteria, EventQuery.getCursors(EventQuery.getPartitionKeys(criteria), null));
+
+        // test assertion
+        assertEquals(3, page.getEvents().size());
+        assertEquals("{\"id\":\"1\"}", page.getEvents().get(0).get("body"));
+        assertNull(page.getContinuationToken());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void runHttpTriggerKO_invalidParameters() {
+        // test precondition
+        ExecutionContext context = mock(ExecutionContext.class);
+        when(context.getLogger()).thenReturn(Logger.getLogger("NodoVerifyKOEventToTableStorage-test-logger"));
+        final HttpResponseMessage.Builder builder = mock(HttpResponseMessage.Builder.class);
+        HttpRequestMessage<Optional<String>> request = mock(HttpRequestMessage.class);
+        HttpResponseMessage responseMock = mock(HttpResponseMessage.class);
+        doReturn(HttpStatus.BAD_REQUEST).when(responseMock).getStatus();
+        doReturn(builder).when(builder).body(any());
+        doReturn(responseMock).when(builder).build();
+        doReturn(builder).when(request).createResponseBuilder(any(HttpStatus.class));
+        EventQuery function = new EventQuery(() -> mock(TableAsyncClient.class), () -> mock(BlobContainerAsyncClient.class));
+
+        // test execution and assertion
+        for (Map<String, String> parameters : List.of(
+                Map.of("from", "2024-01-05T00:00:00"),
+                Map.of("from", "2024-01-05", "to", "2024-01-06T00:00:00"),
+                Map.of("from", "2024-01-06T00:00:00", "to", "2024-01-05T00:00:00"),
+                Map.of("from", "2024-01-01T00:00:00", "to", "2024-03-01T00:00:00"),
+                Map.of("from", "2024-01-05T00:00:00", "to", "2024-01-06T00:00:00", "pageSize", "0"),
+                Map.of("from", "2024-01-05T00:00:00", "to", "2024-01-06T00:00:00", "continuationToken", "not-a-token"))) {
+            doReturn(parameters).when(request).getQueryParameters();
+            assertEquals(HttpStatus.BAD_REQUEST, function.run(request, context).getStatus());
+        }
+        verify(request, times(6)).createResponseBuilder(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void query_emptyPageWithContinuationResumed() throws Exception {
+        // test precondition: the service stops scanning the first partition before finding a matching event
+        TableAsyncClient tableClient = mock(TableAsyncClient.class);
+        List<PagedResponse<TableEntity>> responses = List.of(
+                new PagedResponseBase<Void, TableEntity>(null, 200, null, List.of(), "2024-1-5;b-1704412900", null),
+                new PagedResponseBase<Void, TableEntity>(null, 200, null, ENTITIES.subList(1, 3), null, null));
+        when(tableClient.listEntities(any(ListEntitiesOptions.class)))
+                .thenReturn(new PagedFlux<>(() -> Mono.just(responses.get(0))))
+                .thenReturn(new PagedFlux<>(() -> Mono.just(responses.get(1))));
+        EventQueryCriteria criteria = EventQuery.parseCriteria(Map.of("from", "2024-01-05T00:00:00", "to", "2024-01-06T00:00:00", "idPA", "77777777777"));
+
+        // test execution
+        EventQueryPage page = new EventQuery(() -> tableClient, () -> mock(BlobContainerAsyncClient.class)).query(criteria, EventQuery.getCursors(EventQuery.getPartitionKeys(criteria), null));
+
+        // test assertion: the partition is resumed from where the service stopped scanning
+        assertEquals(List.of("b-1704412900", "c-1704413000"), getRowKeys(page));
+        assertNull(page.getContinuationToken());
+        ArgumentCaptor<ListEntitiesOptions> optionsCaptor = ArgumentCaptor.forClass(ListEntitiesOptions.class);
+        verify(tableClient, times(2)).listEntities(optionsCaptor.capture());
+        assertTrue(optionsCaptor.getValue().getFilter().startsWith("PartitionKey eq '2024-1-5' and RowKey ge 'b-1704412900' and"));
+    }
+
+    @Test
+    void getNextRowKey_continuationOnOtherPartitionEndsScan() {
+        assertEquals("b-1704412900", EventQuery.getNextRowKey("2024-1-5", new PagedResponseBase<Void, TableEntity>(null, 200, null, List.of(), "2024-1-5;b-1704412900", null)));
+        assertNull(EventQuery.getNextRowKey("2024-1-5", new PagedResponseBase<Void, TableEntity>(null, 200, null, List.of(), "2024-1-6;a-1704499200", null)));
+        assertNull(EventQuery.getNextRowKey("2024-1-5", new PagedResponseBase<Void, TableEntity>(null, 200, null, List.of(), null, null)));
+        assertNull(EventQuery.getNextRowKey("2024-1-5", null));
+    }
+
+    @Test
+    void getCursors_tokenOfOtherQueryRejected() throws Exception {
+        Map<String, String> cursors = EventQuery.getCursors(List.of("2024-1-5", "2024-1-6"), null);
+
+        assertEquals(Map.of("2024-1-5", "", "2024-1-6", ""), cursors);
+        assertThrows(IllegalArgumentException.class, () -> EventQuery.getCursors(List.of("2024-1-7"), EventQueryToken.encode(cursors)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static EventQueryPage run(EventQuery function, ExecutionContext context, Map<String, String> parameters) {
+        final HttpResponseMessage.Builder builder = mock(HttpResponseMessage.Builder.class);
+        HttpRequestMessage<Optional<String>> request = mock(HttpRequestMessage.class);
+        HttpResponseMessage responseMock = mock(HttpResponseMessage.class);
+        doReturn(HttpStatus.OK).when(responseMock).getStatus();
+        doReturn(builder).when(builder).body(any());
+        doReturn(responseMock).when(builder).build();
+        doReturn(builder).when(request).createResponseBuilder(any(HttpStatus.class));
+        doReturn(builder).when(builder).header(anyString(), anyString());
+        doReturn(parameters).when(request).getQueryParameters();
+
+        HttpResponseMessage response = function.run(request, context);
+
+        assertEquals(HttpStatus.OK, response.getStatus());
+        ArgumentCaptor<Object> bodyCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(builder).body(bodyCaptor.capture());
+        return (EventQueryPage) bodyCaptor.getValue();
+    }
+
+    private static TableAsyncClient mockTableClient() {
+        // the entities of the requested partition from the requested RowKey, up to the requested number
+        TableAsyncClient tableClient = mock(TableAsyncClient.class);
+        when(tableClient.listEntities(any(ListEntitiesOptions.class))).thenAnswer(invocation -> {
+            ListEntitiesOptions options = invocation.getArgument(0);
+            String filter = options.getFilter();
+            List<TableEntity> matching = new ArrayList<>();
+            for (TableEntity entity : ENTITIES) {
+                boolean afterCursor = !filter.contains("RowKey ge") || entity.getRowKey().compareTo(filter.replaceAll(".*RowKey ge '([^']*)'.*", "$1")) >= 0;
+                if (filter.startsWith("PartitionKey eq '" + entity.getPartitionKey() + "'") && afterCursor) {
+                    matching.add(entity);
+                }
+            }
+            List<TableEntity> page = matching.subList(0, Math.min(matching.size(), options.getTop()));
+            String continuationToken = page.size() < matching.size() ? matching.get(page.size()).getPartitionKey() + ";" + matching.get(page.size()).getRowKey() : null;
+            PagedResponse<TableEntity> response = new PagedResponseBase<Void, TableEntity>(null, 200, null, page, continuationToken, null);
+            return new PagedFlux<>(() -> Mono.just(response));
+        });
+        return tableClient;
+    }
+
+    private static List<String> getRowKeys(EventQueryPage page) {
+        return page.getEvents().stream().map(event -> (String) event.get("RowKey")).collect(Collectors.toList());
+    }
+
+    private static TableEntity entity(String partitionKey, String rowKey, String idPA) {
+        TableEntity entity = new TableEntity(partitionKey, rowKey);
+        entity.addProperty("timestamp", Long.parseLong(rowKey.substring(2)));
+        entity.addProperty("dateTime", LocalDateTime.of(2024, 1, 5, 0, 0));
+        entity.addProperty("idPA", idPA);
+        entity.addProperty("blobBodyRef", "{\"storageAccount\":\"account\",\"containerName\":\"container\",\"fileName\":\"" + rowKey + "\",\"fileLength\":10,\"compression\":\"gzip\",\"compressedLength\":30}");
+        return entity;
+    }
+}
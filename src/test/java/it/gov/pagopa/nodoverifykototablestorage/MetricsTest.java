@@ -0,0 +1,61 @@
+package it.gov.pagopa.nodoverifykototablestorage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.util.Optional;
+import java.util.logging.Logger;
+
+import it.gov.pagopa.nodoverifykototablestorage.util.PipelineMetricsReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+
+@ExtendWith(MockitoExtension.class)
+class MetricsTest {
+
+    @Mock
+    ExecutionContext context;
+
+    @Spy
+    Metrics metricsFunction;
+
+    @Test
+    void runHttpTriggerOK() {
+        // test precondition
+        Logger logger = Logger.getLogger("NodoVerifyKOEventToTableStorage-test-logger");
+        when(context.getLogger()).thenReturn(logger);
+
+        final HttpResponseMessage.Builder builder = mock(HttpResponseMessage.Builder.class);
+        @SuppressWarnings("unchecked")
+        HttpRequestMessage<Optional<String>> request = mock(HttpRequestMessage.class);
+
+        HttpResponseMessage responseMock = mock(HttpResponseMessage.class);
+        doReturn(HttpStatus.OK).when(responseMock).getStatus();
+        doReturn(builder).when(builder).body(any());
+        doReturn(responseMock).when(builder).build();
+        doReturn(builder).when(request).createResponseBuilder(any(HttpStatus.class));
+        doReturn(builder).when(builder).header(anyString(), anyString());
+
+        // test execution
+        HttpResponseMessage response = metricsFunction.run(request, context);
+
+        // test assertion
+        assertEquals(HttpStatus.OK, response.getStatus());
+        ArgumentCaptor<Object> bodyCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(builder).body(bodyCaptor.capture());
+        PipelineMetricsReport report = (PipelineMetricsReport) bodyCaptor.getValue();
+        assertTrue(report.getStages().containsKey("blob_upload"));
+        assertTrue(report.getStages().containsKey("table_transaction"));
+    }
+}
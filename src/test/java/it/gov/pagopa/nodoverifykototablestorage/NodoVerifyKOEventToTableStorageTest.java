@@ -4,9 +4,9 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.AdditionalMatchers.not;
 import static org.mockito.Mockito.*;
 
-import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,25 +14,46 @@ import java.util.TreeMap;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpResponse;
 import com.azure.core.util.BinaryData;
+import com.azure.data.tables.TableAsyncClient;
 import com.azure.data.tables.TableClient;
+import com.azure.data.tables.TableServiceAsyncClient;
 import com.azure.data.tables.TableServiceClient;
 import com.azure.data.tables.TableServiceClientBuilder;
+import com.azure.data.tables.models.TableEntity;
 import com.azure.data.tables.models.TableTransactionAction;
+import com.azure.data.tables.models.TableTransactionResult;
+import com.azure.storage.blob.BlobAsyncClient;
 import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.BlobContainerAsyncClient;
 import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.BlobServiceAsyncClient;
 import com.azure.storage.blob.BlobServiceClient;
 import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobRequestConditions;
+import com.azure.storage.blob.models.BlockBlobItem;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
 import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.RetryContext;
 import it.gov.pagopa.nodoverifykototablestorage.exception.AppException;
+import it.gov.pagopa.nodoverifykototablestorage.model.BlobBodyUpload;
+import it.gov.pagopa.nodoverifykototablestorage.model.DeadLetterEntry;
+import it.gov.pagopa.nodoverifykototablestorage.util.DeadLetterSink;
 import it.gov.pagopa.nodoverifykototablestorage.util.LogHandler;
+import it.gov.pagopa.nodoverifykototablestorage.util.PipelineMetrics;
+import it.gov.pagopa.nodoverifykototablestorage.util.PipelineMetricsReport;
+import it.gov.pagopa.nodoverifykototablestorage.util.ProcessingEngine;
 import it.gov.pagopa.nodoverifykototablestorage.util.TestUtil;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
 
 @ExtendWith(MockitoExtension.class)
 class NodoVerifyKOEventToTableStorageTest {
@@ -67,10 +88,12 @@ class NodoVerifyKOEventToTableStorageTest {
         try (
                 MockedConstruction<BlobServiceClientBuilder> blobServiceClientBuilder = Mockito.mockConstruction(BlobServiceClientBuilder.class, (mock, context) -> {
                     when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
                     when(mock.buildClient()).thenReturn(blobServiceClient);
                 });
                 MockedConstruction<TableServiceClientBuilder> tableServiceClientBuilder = Mockito.mockConstruction(TableServiceClientBuilder.class, (mock, context) -> {
                     when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
                     when(mock.buildClient()).thenReturn(tableServiceClient);
                 });
         ) {
@@ -92,6 +115,12 @@ class NodoVerifyKOEventToTableStorageTest {
         }
     }
 
+    @BeforeEach
+    void clearCompletionRegistry() {
+        // the events persisted by a test would be dropped as duplicates by the following ones
+        NodoVerifyKOEventToTableStorage.getCompletionRegistry().clear();
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     @SneakyThrows
@@ -101,10 +130,12 @@ class NodoVerifyKOEventToTableStorageTest {
         try (
                 MockedConstruction<BlobServiceClientBuilder> blobServiceClientBuilder = Mockito.mockConstruction(BlobServiceClientBuilder.class, (mock, context) -> {
                     when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
                     when(mock.buildClient()).thenReturn(blobServiceClient);
                 });
                 MockedConstruction<TableServiceClientBuilder> tableServiceClientBuilder = Mockito.mockConstruction(TableServiceClientBuilder.class, (mock, context) -> {
                     when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
                     when(mock.buildClient()).thenReturn(tableServiceClient);
                 });
         ) {
@@ -125,7 +156,7 @@ class NodoVerifyKOEventToTableStorageTest {
             // generating expected output on event 1
             String partitionKey1 = "2023-12-12";
             String rowKey1 = "1702406079-uuid-001";
-            int size1 = BinaryData.fromStream(new ByteArrayInputStream(eventInStringForm1.getBytes(StandardCharsets.UTF_8))).toString().length();
+            int size1 = eventInStringForm1.getBytes(StandardCharsets.UTF_8).length;
             Map<String, Object> expectedEvent1 = new HashMap<>();
             expectedEvent1.put("PartitionKey", partitionKey1);
             expectedEvent1.put("RowKey", rowKey1);
@@ -143,7 +174,7 @@ class NodoVerifyKOEventToTableStorageTest {
             // generating expected output on event 2
             String partitionKey2 = "2023-12-13";
             String rowKey2 = "1702483842-uuid-002";
-            int size2 = BinaryData.fromStream(new ByteArrayInputStream(eventInStringForm2.getBytes(StandardCharsets.UTF_8))).toString().length();
+            int size2 = eventInStringForm2.getBytes(StandardCharsets.UTF_8).length;
             Map<String, Object> expectedEvent2 = new HashMap<>();
             expectedEvent2.put("PartitionKey", partitionKey2);
             expectedEvent2.put("RowKey", rowKey2);
@@ -173,11 +204,16 @@ class NodoVerifyKOEventToTableStorageTest {
             List<BinaryData> binaryData = blobCaptor.getAllValues();
             assertNotNull(binaryData);
             assertEquals(2, binaryData.size());
-            assertEquals(eventInStringForm1, binaryData.get(0).toString());
-            assertEquals(eventInStringForm2, binaryData.get(1).toString());
+            // uploads are executed in parallel, so the order of the calls is not guaranteed
+            List<String> uploadedBodies = binaryData.stream().map(BinaryData::toString).collect(Collectors.toList());
+            assertTrue(uploadedBodies.contains(eventInStringForm1));
+            assertTrue(uploadedBodies.contains(eventInStringForm2));
 
             // test assertion for transaction storing
-            List<List<TableTransactionAction>> transactions = transactionCaptor.getAllValues();
+            // transactions are submitted concurrently, so they are sorted by partition before checking them
+            List<List<TableTransactionAction>> transactions = transactionCaptor.getAllValues().stream()
+                    .sorted(Comparator.comparing(transaction -> transaction.get(0).getEntity().getPartitionKey()))
+                    .collect(Collectors.toList());
             assertNotNull(transactions);
             assertFalse(transactions.isEmpty());
             assertEquals(expectedEventsToPersist.size(), transactions.size());
@@ -306,6 +342,284 @@ class NodoVerifyKOEventToTableStorageTest {
         assertTrue(logHandler.getLogs().contains("[ALERT][VerifyKOToTS] Persistence Exception - Could not save event body of"));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    @SneakyThrows
+    void runKo_lastRetrySpooledInDeadLetter() {
+        // mocking objects
+        ExecutionContext context = mock(ExecutionContext.class);
+        Logger logger = Logger.getLogger("NodoVerifyKOEventToTableStorage-test-logger");
+        LogHandler logHandler = new LogHandler();
+        logger.addHandler(logHandler);
+        when(context.getLogger()).thenReturn(logger);
+        when(context.getInvocationId()).thenReturn("invocation-1");
+        RetryContext retryContext = mock(RetryContext.class);
+        when(retryContext.getRetrycount()).thenReturn(7);
+        when(context.getRetryContext()).thenReturn(retryContext);
+        DeadLetterSink deadLetterSink = mock(DeadLetterSink.class);
+
+        // generating input
+        List<String> events = new ArrayList<>();
+        events.add(TestUtil.readStringFromFile("events/event_ko_3.json"));
+        Map<String, Object>[] properties = new HashMap[1];
+        properties[0] = new HashMap<>();
+        properties[0].put("prop1-with-dash", "1");
+
+        // execute logic
+        NodoVerifyKOEventToTableStorage function = new NodoVerifyKOEventToTableStorage(ProcessingEngine.BLOCKING, deadLetterSink);
+        assertThrows(AppException.class, () -> function.processNodoVerifyKOEvent(events, properties, context));
+
+        // test assertion: the failed batch is spooled with the failing stage and error
+        ArgumentCaptor<DeadLetterEntry> entryCaptor = ArgumentCaptor.forClass(DeadLetterEntry.class);
+        verify(deadLetterSink).spool(entryCaptor.capture());
+        DeadLetterEntry entry = entryCaptor.getValue();
+        assertTrue(entry.getId().endsWith("_invocation-1"));
+        assertEquals("blob_upload", entry.getStage());
+        assertTrue(entry.getError().contains("Could not save event body of 1672531200-fail"));
+        assertEquals(events, entry.getEvents());
+        assertEquals("1", entry.getProperties().get(0).get("prop1-with-dash"));
+        assertTrue(logHandler.getLogs().contains("[ALERT][DEAD LETTER][VerifyKOToTS] Spooled [1] events that exhausted the retries"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    @SneakyThrows
+    void runOk_duplicateEventsSkipped() {
+        try (
+                MockedConstruction<BlobServiceClientBuilder> blobServiceClientBuilder = Mockito.mockConstruction(BlobServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildClient()).thenReturn(blobServiceClient);
+                });
+                MockedConstruction<TableServiceClientBuilder> tableServiceClientBuilder = Mockito.mockConstruction(TableServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildClient()).thenReturn(tableServiceClient);
+                });
+        ) {
+            // mocking objects
+            ExecutionContext context = mock(ExecutionContext.class);
+            Logger logger = Logger.getLogger("NodoVerifyKOEventToTableStorage-test-logger");
+            LogHandler logHandler = new LogHandler();
+            logger.addHandler(logHandler);
+            when(context.getLogger()).thenReturn(logger);
+
+            // generating input: the same event delivered twice in the batch
+            String eventInStringForm = TestUtil.readStringFromFile("events/event_ok_1.json");
+            List<String> events = List.of(eventInStringForm, eventInStringForm);
+            Map<String, Object>[] properties = new HashMap[2];
+            properties[0] = new HashMap<>();
+            properties[1] = new HashMap<>();
+            clearInvocations(blobClient, tableClient);
+
+            // execute logic
+            NodoVerifyKOEventToTableStorage function = new NodoVerifyKOEventToTableStorage();
+            function.processNodoVerifyKOEvent(events, properties, context);
+
+            // test assertion: the event is stored once, in a transaction with a single action
+            assertTrue(logHandler.getLogs().contains("Skipping [1/2] duplicate events"));
+            verify(blobClient, times(1)).upload(any(BinaryData.class), anyBoolean());
+            ArgumentCaptor<List<TableTransactionAction>> persistedTransactionCaptor = ArgumentCaptor.forClass(List.class);
+            verify(tableClient, times(1)).submitTransaction(persistedTransactionCaptor.capture());
+            assertEquals(1, persistedTransactionCaptor.getValue().size());
+
+            // execute logic: the event is delivered again by a new invocation
+            function.processNodoVerifyKOEvent(List.of(eventInStringForm), new Map[]{new HashMap<>()}, context);
+
+            // test assertion: no further storage operation is executed for the persisted event
+            assertTrue(logHandler.getLogs().contains("Skipping [1/1] duplicate events"));
+            verify(blobClient, times(1)).upload(any(BinaryData.class), anyBoolean());
+            verify(tableClient, times(1)).submitTransaction(anyList());
+            clearInvocations(blobClient, tableClient);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    @SneakyThrows
+    void runOk_nonStringFaultCode() {
+        try (
+                MockedConstruction<BlobServiceClientBuilder> blobServiceClientBuilder = Mockito.mockConstruction(BlobServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildClient()).thenReturn(blobServiceClient);
+                });
+                MockedConstruction<TableServiceClientBuilder> tableServiceClientBuilder = Mockito.mockConstruction(TableServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildClient()).thenReturn(tableServiceClient);
+                });
+        ) {
+            // generating input: the fault code is a number, not used with the KO counters disabled
+            List<String> events = List.of(TestUtil.readStringFromFile("events/event_ok_1.json").replace("\"PPT_STAZIONE_INT_PA_ERRORE_RESPONSE\"", "500"));
+            Map<String, Object>[] properties = new HashMap[]{new HashMap<>()};
+            clearInvocations(blobClient, tableClient);
+
+            // execute logic
+            NodoVerifyKOEventToTableStorage function = new NodoVerifyKOEventToTableStorage();
+            function.processNodoVerifyKOEvent(events, properties, context);
+
+            // test assertion: the event is persisted without the faultCode column
+            ArgumentCaptor<List<TableTransactionAction>> persistedTransactionCaptor = ArgumentCaptor.forClass(List.class);
+            verify(tableClient, times(1)).submitTransaction(persistedTransactionCaptor.capture());
+            assertEquals("1702406079-uuid-001", persistedTransactionCaptor.getValue().get(0).getEntity().getRowKey());
+            assertFalse(persistedTransactionCaptor.getValue().get(0).getEntity().getProperties().containsKey("faultCode"));
+            clearInvocations(blobClient, tableClient);
+        }
+    }
+
+    @Test
+    void uploadBlobReactively_alreadyStoredBodyNotFailed() {
+        // test precondition: the content-addressed body is already stored
+        BlobContainerAsyncClient containerClient = mock(BlobContainerAsyncClient.class);
+        BlobAsyncClient asyncBlobClient = mock(BlobAsyncClient.class);
+        HttpResponse response = mock(HttpResponse.class);
+        when(response.getStatusCode()).thenReturn(409);
+        when(containerClient.getBlobAsyncClient("hash")).thenReturn(asyncBlobClient);
+        when(asyncBlobClient.uploadWithResponse(any(BlobParallelUploadOptions.class))).thenReturn(Mono.error(new HttpResponseException("blob already exists", response)));
+        BlobBodyUpload upload = BlobBodyUpload.builder()
+                .fileName("hash")
+                .payload(BinaryData.fromString("{}"))
+                .requestConditions(new BlobRequestConditions().setIfNoneMatch("*"))
+                .build();
+        PipelineMetricsReport before = PipelineMetrics.getDefault().getReport();
+
+        // test execution
+        NodoVerifyKOEventToTableStorage.uploadBlobReactively(containerClient, upload).block();
+
+        // test assertion: the upload is counted as deduplicated, as by the blocking engine
+        PipelineMetricsReport after = PipelineMetrics.getDefault().getReport();
+        assertEquals(before.getEvents().getOrDefault("blob_deduplicated", 0L) + 1, after.getEvents().get("blob_deduplicated"));
+        assertEquals(before.getStages().get("blob_upload").getFailures(), after.getStages().get("blob_upload").getFailures());
+        assertEquals(before.getStages().get("blob_upload").getCount(), after.getStages().get("blob_upload").getCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    @SneakyThrows
+    void runKo_invalidBlobStoringInBatchAndRetry() {
+        try (
+                MockedConstruction<BlobServiceClientBuilder> blobServiceClientBuilder = Mockito.mockConstruction(BlobServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildClient()).thenReturn(blobServiceClient);
+                });
+                MockedConstruction<TableServiceClientBuilder> tableServiceClientBuilder = Mockito.mockConstruction(TableServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildClient()).thenReturn(tableServiceClient);
+                });
+        ) {
+            // mocking objects
+            ExecutionContext context = mock(ExecutionContext.class);
+            Logger logger = Logger.getLogger("NodoVerifyKOEventToTableStorage-test-logger");
+            LogHandler logHandler = new LogHandler();
+            logger.addHandler(logHandler);
+            when(context.getLogger()).thenReturn(logger);
+
+            // generating input
+            List<String> events = new ArrayList<>();
+            events.add(TestUtil.readStringFromFile("events/event_ok_1.json"));
+            events.add(TestUtil.readStringFromFile("events/event_ko_3.json"));
+            Map<String, Object>[] properties = new HashMap[2];
+            properties[0] = new HashMap<>();
+            properties[1] = new HashMap<>();
+            clearInvocations(blobClient, tableClient);
+
+            // execute logic
+            NodoVerifyKOEventToTableStorage function = new NodoVerifyKOEventToTableStorage();
+            assertThrows(AppException.class, () -> function.processNodoVerifyKOEvent(events, properties, context));
+
+            // test assertion: the failure is attributed to the right event and the other event is persisted anyway
+            assertTrue(logHandler.getLogs().contains("Could not save event body of 1672531200-fail on Azure Blob Storage"));
+            assertFalse(logHandler.getLogs().contains("Could not save event body of 1702406079-uuid-001"));
+            verify(blobClient, times(1)).upload(any(BinaryData.class), anyBoolean());
+            ArgumentCaptor<List<TableTransactionAction>> persistedTransactionCaptor = ArgumentCaptor.forClass(List.class);
+            verify(tableClient, times(1)).submitTransaction(persistedTransactionCaptor.capture());
+            assertEquals("1702406079-uuid-001", persistedTransactionCaptor.getValue().get(0).getEntity().getRowKey());
+
+            // execute retry: the event already persisted is skipped
+            RetryContext retryContext = mock(RetryContext.class);
+            when(retryContext.getRetrycount()).thenReturn(1);
+            when(context.getRetryContext()).thenReturn(retryContext);
+            assertThrows(AppException.class, () -> function.processNodoVerifyKOEvent(events, properties, context));
+
+            // test assertion: no further storage operation is executed for the persisted event
+            assertTrue(logHandler.getLogs().contains("Skipping [1/2] events already persisted by a previous attempt"));
+            verify(blobClient, times(1)).upload(any(BinaryData.class), anyBoolean());
+            verify(tableClient, times(1)).submitTransaction(anyList());
+            clearInvocations(blobClient, tableClient);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    @SneakyThrows
+    void runKo_reactiveEngineInvalidBlobStoringInBatch() {
+        BlobServiceAsyncClient blobServiceAsyncClient = mock(BlobServiceAsyncClient.class);
+        BlobContainerAsyncClient blobContainerAsyncClient = mock(BlobContainerAsyncClient.class);
+        BlobAsyncClient blobAsyncClient = mock(BlobAsyncClient.class);
+        BlobAsyncClient failingBlobAsyncClient = mock(BlobAsyncClient.class);
+        TableServiceAsyncClient tableServiceAsyncClient = mock(TableServiceAsyncClient.class);
+        TableAsyncClient tableAsyncClient = mock(TableAsyncClient.class);
+        lenient().when(blobServiceAsyncClient.getBlobContainerAsyncClient(any())).thenReturn(blobContainerAsyncClient);
+        lenient().when(blobContainerAsyncClient.createIfNotExists()).thenReturn(Mono.just(true));
+        when(blobContainerAsyncClient.getAccountName()).thenReturn(storageAccount);
+        when(blobContainerAsyncClient.getBlobAsyncClient("1702406079-uuid-001")).thenReturn(blobAsyncClient);
+        when(blobContainerAsyncClient.getBlobAsyncClient("1672531200-fail")).thenReturn(failingBlobAsyncClient);
+        when(blobAsyncClient.upload(any(BinaryData.class), anyBoolean())).thenReturn(Mono.just(mock(BlockBlobItem.class)));
+        when(failingBlobAsyncClient.upload(any(BinaryData.class), anyBoolean())).thenReturn(Mono.error(new IllegalStateException("upload failed")));
+        lenient().when(tableServiceAsyncClient.createTableIfNotExists(any())).thenReturn(Mono.empty());
+        lenient().when(tableServiceAsyncClient.getTableClient(any())).thenReturn(tableAsyncClient);
+        when(tableAsyncClient.submitTransaction(anyList())).thenReturn(Mono.just(mock(TableTransactionResult.class)));
+
+        try (
+                MockedConstruction<BlobServiceClientBuilder> blobServiceClientBuilder = Mockito.mockConstruction(BlobServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildAsyncClient()).thenReturn(blobServiceAsyncClient);
+                });
+                MockedConstruction<TableServiceClientBuilder> tableServiceClientBuilder = Mockito.mockConstruction(TableServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildAsyncClient()).thenReturn(tableServiceAsyncClient);
+                });
+        ) {
+            // mocking objects
+            ExecutionContext context = mock(ExecutionContext.class);
+            Logger logger = Logger.getLogger("NodoVerifyKOEventToTableStorage-test-logger");
+            LogHandler logHandler = new LogHandler();
+            logger.addHandler(logHandler);
+            when(context.getLogger()).thenReturn(logger);
+
+            // generating input
+            String eventInStringForm = TestUtil.readStringFromFile("events/event_ok_1.json");
+            List<String> events = new ArrayList<>();
+            events.add(eventInStringForm);
+            events.add(TestUtil.readStringFromFile("events/event_ko_3.json"));
+            Map<String, Object>[] properties = new HashMap[2];
+            properties[0] = new HashMap<>();
+            properties[1] = new HashMap<>();
+
+            // execute logic
+            NodoVerifyKOEventToTableStorage function = new NodoVerifyKOEventToTableStorage(ProcessingEngine.REACTIVE);
+            assertThrows(AppException.class, () -> function.processNodoVerifyKOEvent(events, properties, context));
+
+            // test assertion: the failure is mapped as in the blocking engine and the other event is persisted anyway
+            assertTrue(logHandler.getLogs().contains("[ALERT][VerifyKOToTS] Persistence Exception - Could not save event body of 1672531200-fail on Azure Blob Storage"));
+            ArgumentCaptor<BinaryData> uploadedBodyCaptor = ArgumentCaptor.forClass(BinaryData.class);
+            verify(blobAsyncClient, times(1)).upload(uploadedBodyCaptor.capture(), eq(true));
+            assertEquals(eventInStringForm, uploadedBodyCaptor.getValue().toString());
+            ArgumentCaptor<List<TableTransactionAction>> persistedTransactionCaptor = ArgumentCaptor.forClass(List.class);
+            verify(tableAsyncClient, times(1)).submitTransaction(persistedTransactionCaptor.capture());
+            assertEquals(1, persistedTransactionCaptor.getValue().size());
+            TableEntity persistedEntity = persistedTransactionCaptor.getValue().get(0).getEntity();
+            assertEquals("1702406079-uuid-001", persistedEntity.getRowKey());
+            assertEquals("{\"storageAccount\":\"" + storageAccount + "\",\"containerName\":\"null\",\"fileName\":\"1702406079-uuid-001\",\"fileLength\":" + eventInStringForm.getBytes(StandardCharsets.UTF_8).length + "}",
+                    persistedEntity.getProperty("blobBodyRef"));
+        }
+    }
+
     @Test
     @SneakyThrows
     void runKo_genericError() {
@@ -0,0 +1,141 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void execute_retriesThrottledOperation() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 8, 3, Duration.ofMillis(1), Duration.ofMillis(5));
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = limiter.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw throttling(503);
+            }
+            return "saved";
+        });
+
+        assertEquals("saved", result);
+        assertEquals(3, attempts.get());
+        assertTrue(limiter.getLimit() < 8, "limit was " + limiter.getLimit());
+    }
+
+    @Test
+    void execute_otherErrorsNotRetried() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 8, 3, Duration.ofMillis(1), Duration.ofMillis(5));
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> limiter.execute(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException(throttling(400));
+        }));
+        assertThrows(HttpResponseException.class, () -> new AdaptiveConcurrencyLimiter("test", 8, 0, Duration.ofMillis(1), Duration.ofMillis(5)).execute(() -> {
+            attempts.incrementAndGet();
+            throw throttling(429);
+        }));
+
+        assertEquals(2, attempts.get());
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void limit_decreasedOnThrottleAndIncreasedOnRecovery() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 8, 0, Duration.ofMillis(1), Duration.ofMillis(5));
+
+        for (int index = 0; index < 5; index++) {
+            limiter.onThrottle();
+            TimeUnit.MILLISECONDS.sleep(2);
+        }
+        assertEquals(1, limiter.getLimit());
+
+        // the limit grows by one every limit successes with a recovered latency
+        long latency = TimeUnit.MILLISECONDS.toNanos(10);
+        limiter.onSuccess(latency);
+        assertEquals(2, limiter.getLimit());
+        limiter.onSuccess(latency);
+        limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(2, limiter.getLimit());
+        limiter.onSuccess(latency);
+        assertEquals(3, limiter.getLimit());
+        for (int index = 0; index < 100; index++) {
+            limiter.onSuccess(latency);
+        }
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void execute_boundsConcurrentOperations() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 0, Duration.ofMillis(1), Duration.ofMillis(5));
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<Object>> futures = executor.invokeAll(List.of(
+                    () -> track(limiter, inFlight, maxInFlight), () -> track(limiter, inFlight, maxInFlight),
+                    () -> track(limiter, inFlight, maxInFlight), () -> track(limiter, inFlight, maxInFlight),
+                    () -> track(limiter, inFlight, maxInFlight), () -> track(limiter, inFlight, maxInFlight)));
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    void executeReactively_retriesAndBoundsOperations() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 2, Duration.ofMillis(1), Duration.ofMillis(5));
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger attempts = new AtomicInteger();
+
+        List<Integer> results = Flux.range(0, 6)
+                .flatMap(index -> limiter.execute(Mono.defer(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    if (index == 0 && attempts.incrementAndGet() == 1) {
+                        return Mono.<Integer>error(throttling(503)).doOnTerminate(inFlight::decrementAndGet);
+                    }
+                    return Mono.delay(Duration.ofMillis(5)).thenReturn(index).doOnTerminate(inFlight::decrementAndGet);
+                })), 6)
+                .collectList()
+                .block();
+
+        assertEquals(6, results.size());
+        assertEquals(2, attempts.get());
+        assertEquals(2, maxInFlight.get());
+        assertThrows(HttpResponseException.class, () -> limiter.execute(Mono.error(throttling(429))).block());
+    }
+
+    private static Object track(AdaptiveConcurrencyLimiter limiter, AtomicInteger inFlight, AtomicInteger maxInFlight) throws Exception {
+        return limiter.execute(() -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            TimeUnit.MILLISECONDS.sleep(20);
+            inFlight.decrementAndGet();
+            return null;
+        });
+    }
+
+    private static HttpResponseException throttling(int statusCode) {
+        HttpResponse response = Mockito.mock(HttpResponse.class);
+        Mockito.when(response.getStatusCode()).thenReturn(statusCode);
+        return new HttpResponseException("status " + statusCode, response);
+    }
+}
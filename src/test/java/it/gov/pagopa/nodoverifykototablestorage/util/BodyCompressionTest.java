@@ -0,0 +1,64 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import it.gov.pagopa.nodoverifykototablestorage.model.BlobBodyReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+class BodyCompressionTest {
+
+    @ParameterizedTest
+    @EnumSource(BodyCompression.class)
+    void compress_roundTrip(BodyCompression compression) throws Exception {
+        byte[] body = TestUtil.readStringFromFile("events/event_ok_1.json").getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = compression.compress(body);
+
+        assertArrayEquals(body, compression.decompress(compressed));
+        assertSame(compression, BodyCompression.fromContentEncoding(compression.getContentEncoding()));
+        if (compression != BodyCompression.NONE) {
+            assertTrue(compressed.length < body.length);
+        }
+    }
+
+    @Test
+    void decompress_zstdFrameWithoutSize() throws Exception {
+        byte[] body = TestUtil.readStringFromFile("events/event_ok_1.json").getBytes(StandardCharsets.UTF_8);
+        // a frame written in streaming mode does not record its decompressed size
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ZstdOutputStream zstd = new ZstdOutputStream(output)) {
+            zstd.write(body);
+        }
+
+        assertArrayEquals(body, BodyCompression.ZSTD.decompress(output.toByteArray()));
+        assertArrayEquals(new byte[0], BodyCompression.ZSTD.decompress(BodyCompression.ZSTD.compress(new byte[0])));
+        assertThrows(IllegalArgumentException.class, () -> BodyCompression.ZSTD.decompress("not zstd".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void fromContentEncoding_unsupported() {
+        assertSame(BodyCompression.GZIP, BodyCompression.fromContentEncoding("GZIP"));
+        assertSame(BodyCompression.NONE, BodyCompression.fromContentEncoding(""));
+        assertThrows(IllegalArgumentException.class, () -> BodyCompression.fromContentEncoding("br"));
+    }
+
+    @Test
+    void blobBodyReference_compressionMarker() {
+        BlobBodyReference.BlobBodyReferenceBuilder builder = BlobBodyReference.builder()
+                .storageAccount("account")
+                .containerName("container")
+                .fileName("file")
+                .fileLength(100);
+
+        assertEquals("{\"storageAccount\":\"account\",\"containerName\":\"container\",\"fileName\":\"file\",\"fileLength\":100}",
+                builder.build().toString());
+        assertEquals("{\"storageAccount\":\"account\",\"containerName\":\"container\",\"fileName\":\"file\",\"fileLength\":100,\"compression\":\"gzip\",\"compressedLength\":40}",
+                builder.compression("gzip").compressedLength(40).build().toString());
+    }
+}
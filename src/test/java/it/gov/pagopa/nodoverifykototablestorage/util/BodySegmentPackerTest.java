@@ -0,0 +1,80 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import it.gov.pagopa.nodoverifykototablestorage.model.BlobBodyReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+class BodySegmentPackerTest {
+
+    @ParameterizedTest
+    @EnumSource(BodyCompression.class)
+    void pack_rangedReadOfEachBody(BodyCompression compression) {
+        List<String> bodies = List.of("{\"id\":\"a\"}", "{\"id\":\"bè\"}", "{\"id\":\"c\"}");
+        BodySegmentPacker packer = new BodySegmentPacker(compression, 1024);
+
+        List<BodySegmentPacker.Segment<String>> segments = packer.pack(bodies, Function.identity(), body -> body.substring(7, 8));
+
+        assertEquals(1, segments.size());
+        BodySegmentPacker.Segment<String> segment = segments.get(0);
+        assertEquals("segments/a_3_" + ContentHash.sha256(segment.getContent()), segment.getName());
+        assertEquals(3, segment.getEntries().size());
+        for (BodySegmentPacker.Entry<String> entry : segment.getEntries()) {
+            byte[] range = Arrays.copyOfRange(segment.getContent(), (int) entry.getOffset(), (int) (entry.getOffset() + entry.getLength()));
+            byte[] body = compression.decompress(range);
+            assertEquals(entry.getItem(), new String(body, StandardCharsets.UTF_8));
+            assertEquals(body.length, entry.getOriginalLength());
+        }
+    }
+
+    @Test
+    void pack_splitOnMaxSize() {
+        List<String> bodies = List.of("0123456789", "0123456789", "0123456789012345678901234", "01234");
+        BodySegmentPacker packer = new BodySegmentPacker(BodyCompression.NONE, 20);
+
+        List<BodySegmentPacker.Segment<String>> segments = packer.pack(bodies, Function.identity(), body -> String.valueOf(body.length()));
+
+        assertEquals(3, segments.size());
+        assertEquals("segments/10_2_" + ContentHash.sha256(segments.get(0).getContent()), segments.get(0).getName());
+        assertEquals(20, segments.get(0).getContent().length);
+        assertEquals(10, segments.get(0).getEntries().get(1).getOffset());
+        assertEquals("segments/25_1_" + ContentHash.sha256(segments.get(1).getContent()), segments.get(1).getName());
+        assertEquals(25, segments.get(1).getContent().length);
+        assertEquals("segments/5_1_" + ContentHash.sha256(segments.get(2).getContent()), segments.get(2).getName());
+        assertTrue(packer.pack(List.of(), Function.identity(), Function.identity()).isEmpty());
+    }
+
+    @Test
+    void pack_sameFirstEventWithOtherContentsNamedApart() {
+        BodySegmentPacker packer = new BodySegmentPacker(BodyCompression.NONE, 1024);
+
+        String first = packer.pack(List.of("{\"id\":\"a\"}", "{\"id\":\"b\"}"), Function.identity(), body -> "a").get(0).getName();
+        String retried = packer.pack(List.of("{\"id\":\"a\"}", "{\"id\":\"b\"}"), Function.identity(), body -> "a").get(0).getName();
+        String redelivered = packer.pack(List.of("{\"id\":\"a\"}", "{\"id\":\"c\"}"), Function.identity(), body -> "a").get(0).getName();
+
+        assertEquals(first, retried);
+        assertNotEquals(first, redelivered);
+    }
+
+    @Test
+    void blobBodyReference_segmentRange() {
+        BlobBodyReference reference = BlobBodyReference.builder()
+                .storageAccount("account")
+                .containerName("container")
+                .fileName("segments/a_3")
+                .fileLength(100)
+                .offset(10L)
+                .length(100)
+                .build();
+
+        assertEquals("{\"storageAccount\":\"account\",\"containerName\":\"container\",\"fileName\":\"segments/a_3\",\"fileLength\":100,\"offset\":10,\"length\":100}",
+                reference.toString());
+    }
+}
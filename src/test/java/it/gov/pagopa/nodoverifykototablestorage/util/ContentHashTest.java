@@ -0,0 +1,41 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import it.gov.pagopa.nodoverifykototablestorage.model.BlobBodyReference;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+class ContentHashTest {
+
+    @Test
+    void sha256_hex() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", ContentHash.sha256("abc".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", ContentHash.sha256(new byte[0]));
+    }
+
+    @Test
+    void getBlobName_byCompression() {
+        String hash = ContentHash.sha256("abc".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("sha256/" + hash, ContentHash.getBlobName(hash, BodyCompression.NONE));
+        assertEquals("sha256/" + hash + ".gzip", ContentHash.getBlobName(hash, BodyCompression.GZIP));
+        assertEquals("sha256/" + hash + ".zstd", ContentHash.getBlobName(hash, BodyCompression.ZSTD));
+    }
+
+    @Test
+    void blobBodyReference_withContentHash() {
+        BlobBodyReference reference = BlobBodyReference.builder()
+                .storageAccount("account")
+                .containerName("container")
+                .fileName("sha256/abc.gzip")
+                .fileLength(100)
+                .contentHash("abc")
+                .compression("gzip")
+                .compressedLength(40)
+                .build();
+
+        assertEquals("{\"storageAccount\":\"account\",\"containerName\":\"container\",\"fileName\":\"sha256/abc.gzip\",\"fileLength\":100,\"contentHash\":\"abc\",\"compression\":\"gzip\",\"compressedLength\":40}", reference.toString());
+    }
+}
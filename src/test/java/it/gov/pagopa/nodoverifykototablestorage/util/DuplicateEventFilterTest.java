@@ -0,0 +1,67 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+class DuplicateEventFilterTest {
+
+    @Test
+    void accept_duplicatesInBatchDropped() {
+        DuplicateEventFilter filter = new DuplicateEventFilter(null);
+
+        assertTrue(filter.accept("1702406079-uuid-001"));
+        assertTrue(filter.accept("1702483842-uuid-002"));
+        assertFalse(filter.accept("1702406079-uuid-001"));
+
+        assertEquals(1, filter.getDuplicates());
+    }
+
+    @Test
+    void accept_recentlyPersistedDropped() {
+        MutableClock clock = new MutableClock();
+        EventCompletionRegistry registry = new EventCompletionRegistry(10, Duration.ofMinutes(10), clock);
+        registry.markPersisted("1702406079-uuid-001");
+        registry.markBlobStored("1702483842-uuid-002", "reference");
+
+        // the events only stored on Blob Storage are not persisted yet
+        DuplicateEventFilter filter = new DuplicateEventFilter(registry);
+        assertFalse(filter.accept("1702406079-uuid-001"));
+        assertTrue(filter.accept("1702483842-uuid-002"));
+        assertEquals(1, filter.getDuplicates());
+
+        // the persisted events are forgotten after the TTL
+        clock.advance(Duration.ofMinutes(11));
+        assertTrue(new DuplicateEventFilter(registry).accept("1702406079-uuid-001"));
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2024-01-05T08:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+class EventCompletionRegistryTest {
+
+    @Test
+    void isPersisted_expiredAfterTtl() {
+        MutableClock clock = new MutableClock();
+        EventCompletionRegistry registry = new EventCompletionRegistry(10, Duration.ofMinutes(10), clock);
+        registry.markBlobStored("1702406079-uuid-001", "reference");
+        registry.markPersisted("1702406079-uuid-001");
+
+        clock.advance(Duration.ofMinutes(10));
+        assertTrue(registry.isPersisted("1702406079-uuid-001"));
+        assertEquals("reference", registry.getBlobBodyReference("1702406079-uuid-001"));
+
+        clock.advance(Duration.ofMillis(1));
+        assertFalse(registry.isPersisted("1702406079-uuid-001"));
+        assertNull(registry.getBlobBodyReference("1702406079-uuid-001"));
+    }
+
+    @Test
+    void markPersisted_leastRecentlyUsedEvicted() {
+        EventCompletionRegistry registry = new EventCompletionRegistry(2, Duration.ofMinutes(10), new MutableClock());
+        registry.markPersisted("1702406079-uuid-001");
+        registry.markPersisted("1702483842-uuid-002");
+
+        // reading the first event makes the second one the least recently used
+        assertTrue(registry.isPersisted("1702406079-uuid-001"));
+        registry.markPersisted("1702570201-uuid-003");
+
+        assertTrue(registry.isPersisted("1702406079-uuid-001"));
+        assertFalse(registry.isPersisted("1702483842-uuid-002"));
+        assertTrue(registry.isPersisted("1702570201-uuid-003"));
+    }
+
+    @Test
+    void clear_forgetsAllEvents() {
+        EventCompletionRegistry registry = new EventCompletionRegistry(10, Duration.ofMinutes(10), new MutableClock());
+        registry.markPersisted("1702406079-uuid-001");
+        registry.markBlobStored("1702483842-uuid-002", "reference");
+
+        registry.clear();
+
+        assertFalse(registry.isPersisted("1702406079-uuid-001"));
+        assertNull(registry.getBlobBodyReference("1702483842-uuid-002"));
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2024-01-05T08:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class EventFieldExtractorTest {
+
+    private static final EventFieldExtractor extractor = new EventFieldExtractor(
+            Constants.ID_EVENT_FIELD,
+            Constants.FAULTBEAN_TIMESTAMP_EVENT_FIELD,
+            Constants.NOTICE_NUMBER_EVENT_FIELD,
+            Constants.ID_PA_EVENT_FIELD,
+            Constants.ID_PSP_EVENT_FIELD,
+            Constants.ID_STATION_EVENT_FIELD,
+            Constants.ID_CHANNEL_EVENT_FIELD);
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @ParameterizedTest
+    @ValueSource(strings = {"events/event_ok_1.json", "events/event_ok_2.json", "events/event_ko_1.json", "events/event_ko_3.json"})
+    @SneakyThrows
+    void extract_sameValuesOfMap(String file) {
+        String json = TestUtil.readStringFromFile(file);
+        Map<String, Object> event = ObjectMapperUtils.readValue(json, Map.class);
+
+        EventFieldExtractor.ExtractedFields fields = extractor.extract(json);
+
+        assertEquals(event.get("id"), fields.getField(Constants.ID_EVENT_FIELD, null));
+        assertEquals(((Map) event.getOrDefault("faultBean", Map.of())).get("timestamp"), fields.get(Constants.FAULTBEAN_TIMESTAMP_EVENT_FIELD));
+        assertEquals(((Map) event.get("debtorPosition")).get("noticeNumber"), fields.getField(Constants.NOTICE_NUMBER_EVENT_FIELD, null));
+        assertEquals(((Map) event.get("creditor")).get("idPA"), fields.getField(Constants.ID_PA_EVENT_FIELD, null));
+        assertEquals(((Map) event.get("creditor")).get("idStation"), fields.getField(Constants.ID_STATION_EVENT_FIELD, null));
+        assertEquals(((Map) event.get("psp")).get("idPsp"), fields.getField(Constants.ID_PSP_EVENT_FIELD, null));
+        assertEquals(((Map) event.get("psp")).get("idChannel"), fields.getField(Constants.ID_CHANNEL_EVENT_FIELD, null));
+    }
+
+    @Test
+    @SneakyThrows
+    void extract_missingFields() {
+        EventFieldExtractor.ExtractedFields fields = extractor.extract("{\"creditor\":{\"idStation\":null},\"psp\":\"scalar\",\"other\":{\"creditor\":{\"idPA\":\"1\"}},\"list\":[{\"id\":\"2\"}]}");
+
+        assertEquals(Constants.NA, fields.getField(Constants.ID_EVENT_FIELD, Constants.NA));
+        assertEquals(Constants.NA, fields.getField(Constants.ID_PA_EVENT_FIELD, Constants.NA));
+        assertEquals(Constants.NA, fields.getField(Constants.ID_STATION_EVENT_FIELD, Constants.NA));
+        assertNull(fields.get(Constants.FAULTBEAN_TIMESTAMP_EVENT_FIELD));
+        assertNull(fields.get(Constants.ID_PSP_EVENT_FIELD));
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> fields.getField(Constants.ID_PSP_EVENT_FIELD, Constants.NA));
+        assertEquals("The field [psp.idPsp] does not exists in the passed event.", exception.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> fields.getField(Constants.NOTICE_NUMBER_EVENT_FIELD, Constants.NA));
+    }
+
+    @Test
+    void extract_invalidEvents() {
+        assertThrows(IOException.class, () -> extractor.extract("[]"));
+        assertThrows(IOException.class, () -> extractor.extract("{\"id\":\"1\""));
+        assertThrows(IllegalArgumentException.class, () -> extractor.extract("{\"id\":1}"));
+    }
+
+    @Test
+    @SneakyThrows
+    void extract_lenientFields() {
+        EventFieldExtractor lenientExtractor = new EventFieldExtractor(List.of(Constants.FAULTBEAN_FAULT_CODE_EVENT_FIELD), Constants.ID_EVENT_FIELD);
+
+        assertEquals("500", lenientExtractor.extract("{\"id\":\"1\",\"faultBean\":{\"faultCode\":500}}").getField(Constants.FAULTBEAN_FAULT_CODE_EVENT_FIELD, Constants.NA));
+        assertEquals("true", lenientExtractor.extract("{\"faultBean\":{\"faultCode\":true}}").getField(Constants.FAULTBEAN_FAULT_CODE_EVENT_FIELD, Constants.NA));
+        assertEquals(Constants.NA, lenientExtractor.extract("{\"faultBean\":{\"faultCode\":{\"code\":\"PPT_X\"},\"timestamp\":\"t\"}}").getField(Constants.FAULTBEAN_FAULT_CODE_EVENT_FIELD, Constants.NA));
+        assertEquals(Constants.NA, lenientExtractor.extract("{\"faultBean\":{\"faultCode\":[1,2]}}").getField(Constants.FAULTBEAN_FAULT_CODE_EVENT_FIELD, Constants.NA));
+        assertThrows(IllegalArgumentException.class, () -> lenientExtractor.extract("{\"id\":1}"));
+    }
+
+    @Test
+    void create_conflictingPaths() {
+        assertThrows(IllegalArgumentException.class, () -> new EventFieldExtractor("creditor", "creditor.idPA"));
+        assertThrows(IllegalArgumentException.class, () -> new EventFieldExtractor("creditor.idPA", "creditor"));
+    }
+}
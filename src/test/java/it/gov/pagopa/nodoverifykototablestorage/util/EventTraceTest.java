@@ -0,0 +1,58 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.azure.data.tables.models.TableEntity;
+import com.azure.data.tables.models.TableTransactionAction;
+import com.azure.data.tables.models.TableTransactionActionType;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class EventTraceTest {
+
+    @Test
+    void summarize_fixedSize() {
+        EventTrace trace = new EventTrace(0, 100);
+        Map<String, List<TableTransactionAction>> events = new LinkedHashMap<>();
+        events.put("2024-1-5", List.of(action("2024-1-5", "b-1704412800", 1704412800L), action("2024-1-5", "a-1704412900", 1704412900L)));
+        events.put("2024-1-6", List.of(action("2024-1-6", "c-1704499200", 1704499200L)));
+
+        assertEquals("{Count: 3, Partitions: 2, EventTimestamps: [1704412800, 1704499200], RowKeys: [a-1704412900, c-1704499200]}", trace.summarize(events));
+        assertEquals("{Count: 0}", trace.summarize(Map.of()));
+    }
+
+    @Test
+    void detail_perEvent() {
+        EventTrace trace = new EventTrace(0, 100);
+        Map<String, List<TableTransactionAction>> events = new LinkedHashMap<>();
+        events.put("2024-1-5", List.of(action("2024-1-5", "b-1704412800", 1704412800L), action("2024-1-5", "a-1704412900", null)));
+
+        assertEquals("[[{PartitionKey: 2024-1-5, RowKey: b-1704412800, EventTimestamp: 1704412800}, {PartitionKey: 2024-1-5, RowKey: a-1704412900, EventTimestamp: -1}]]", trace.detail(events));
+    }
+
+    @Test
+    void isSampled_rate() {
+        assertFalse(new EventTrace(0, 100).isSampled());
+        assertTrue(new EventTrace(1, 100).isSampled());
+    }
+
+    @Test
+    void dumpRaw_capped() {
+        EventTrace trace = new EventTrace(0, 12);
+
+        assertEquals("[abcd, efgh]", trace.dumpRaw(List.of("abcd", "efgh")));
+        assertEquals("[abcd, efgh] (1 of 3 events omitted or truncated, max 12 characters)", trace.dumpRaw(List.of("abcd", "efgh", "ijkl")));
+        assertEquals("[abcdefghijkl...] (2 of 2 events omitted or truncated, max 12 characters)", trace.dumpRaw(List.of("abcdefghijklmnop", "qrst")));
+    }
+
+    private static TableTransactionAction action(String partitionKey, String rowKey, Long timestamp) {
+        TableEntity entity = new TableEntity(partitionKey, rowKey);
+        if (timestamp != null) {
+            entity.addProperty(Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD, timestamp);
+        }
+        return new TableTransactionAction(TableTransactionActionType.UPSERT_REPLACE, entity);
+    }
+}
@@ -0,0 +1,112 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks the codec against the formatter-based parsing previously used by the function, on random and edge-case timestamps.
+ */
+class FaultBeanTimestampCodecTest {
+
+    private static final long SEED = 20231212L;
+
+    private static final int SAMPLES = 50_000;
+
+    private static final DateTimeFormatter LEGACY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSSSS");
+
+    @Test
+    void parse_randomTimestampsLikeLegacy() {
+        Random random = new Random(SEED);
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            String timestamp = randomTimestamp(random);
+            assertSameAsLegacy(timestamp);
+        }
+    }
+
+    @Test
+    void parse_randomMalformedTimestampsLikeLegacy() {
+        Random random = new Random(SEED);
+        String alphabet = "0123456789-T:.Z ";
+        for (int sample = 0; sample < SAMPLES; sample++) {
+            char[] timestamp = randomTimestamp(random).toCharArray();
+            timestamp[random.nextInt(timestamp.length)] = alphabet.charAt(random.nextInt(alphabet.length()));
+            assertSameAsLegacy(new String(timestamp));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2023-12-12T18:34:39.860654", "2023-12-12T18:34:39.86", "2023-12-12T18:34:39.", "2023-12-12T18:34:39",
+            "2024-02-29T00:00:00.1", "2023-02-29T00:00:00", "2023-04-31T12:00:00.000001", "2023-12-31T24:00:00", "2023-01-31T24:00:00.0",
+            "1970-01-01T00:00:00", "1969-12-31T23:59:59.999999", "0001-01-01T00:00:00", "9999-12-31T23:59:59.999999"})
+    void parse_edgeCasesLikeLegacy(String timestamp) {
+        assertSameAsLegacy(timestamp);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "", "ERROR", "2023-12-12", "2023-12-12T18:34:39.8606541", "2023-12-12T18:34:39Z", "2023-12-12 18:34:39.860654",
+            "2023-12-32T00:00:00", "2023-13-01T00:00:00", "2023-00-01T00:00:00", "2023-01-00T00:00:00", "0000-01-01T00:00:00",
+            "2023-12-12T24:00:01", "2023-12-12T18:60:00", "2023-12-12T18:34:60", "+023-12-12T18:34:39", "12023-12-12T18:34:39",
+            "2023-12-12T18:34:39.86a", "2023-12-12T18:34:39.-1"})
+    void parse_invalidTimestampsLikeLegacy(String timestamp) {
+        assertThrows(DateTimeParseException.class, () -> FaultBeanTimestampCodec.parse(timestamp));
+        assertSameAsLegacy(timestamp);
+    }
+
+    @Test
+    void parse_partitionDay() {
+        FaultBeanTimestampCodec.ParsedTimestamp parsedTimestamp = FaultBeanTimestampCodec.parse("2024-01-05T08:34:39.1");
+
+        assertEquals("2024-1-5", PartitionKeyStrategy.getDay(parsedTimestamp.toLocalDateTime().toLocalDate()));
+        assertEquals(LocalDateTime.of(2024, 1, 5, 8, 34, 39, 100_000_000), parsedTimestamp.toLocalDateTime());
+        assertEquals(1704443679L, parsedTimestamp.getEpochSecond());
+    }
+
+    private static void assertSameAsLegacy(String timestamp) {
+        LocalDateTime expected;
+        try {
+            expected = LocalDateTime.parse(legacyFixDateTime(timestamp), LEGACY_FORMATTER);
+        } catch (DateTimeParseException e) {
+            assertThrows(DateTimeParseException.class, () -> FaultBeanTimestampCodec.parse(timestamp), timestamp);
+            return;
+        }
+        FaultBeanTimestampCodec.ParsedTimestamp parsedTimestamp = FaultBeanTimestampCodec.parse(timestamp);
+        assertEquals(expected, parsedTimestamp.toLocalDateTime(), timestamp);
+        assertEquals(expected.toEpochSecond(ZoneOffset.UTC), parsedTimestamp.getEpochSecond(), timestamp);
+        assertEquals(expected.getYear() + "-" + expected.getMonthValue() + "-" + expected.getDayOfMonth(), PartitionKeyStrategy.getDay(parsedTimestamp.toLocalDateTime().toLocalDate()), timestamp);
+    }
+
+    private static String legacyFixDateTime(String faultBeanTimestamp) {
+        int dotIndex = faultBeanTimestamp.indexOf('.');
+        if (dotIndex != -1) {
+            int fractionLength = faultBeanTimestamp.length() - dotIndex - 1;
+            faultBeanTimestamp = fractionLength < 6 ? String.format("%s%s", faultBeanTimestamp, "0".repeat(6 - fractionLength)) : faultBeanTimestamp;
+        } else {
+            faultBeanTimestamp = String.format("%s.000000", faultBeanTimestamp);
+        }
+        return faultBeanTimestamp;
+    }
+
+    private static String randomTimestamp(Random random) {
+        int fractionDigits = random.nextInt(8) - 1;
+        StringBuilder builder = new StringBuilder(String.format("%04d-%02d-%02dT%02d:%02d:%02d",
+                1 + random.nextInt(9999), 1 + random.nextInt(12), 1 + random.nextInt(31), random.nextInt(25), random.nextInt(60), random.nextInt(60)));
+        if (fractionDigits >= 0) {
+            builder.append('.');
+            for (int index = 0; index < fractionDigits; index++) {
+                builder.append((char) ('0' + random.nextInt(10)));
+            }
+        }
+        return builder.toString();
+    }
+}
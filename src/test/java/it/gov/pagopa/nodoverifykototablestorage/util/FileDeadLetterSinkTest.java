@@ -0,0 +1,49 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import it.gov.pagopa.nodoverifykototablestorage.model.DeadLetterEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+class FileDeadLetterSinkTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void spool_listedOldestFirst() throws Exception {
+        FileDeadLetterSink sink = new FileDeadLetterSink(directory.resolve("deadletter"));
+        assertTrue(sink.list(10).isEmpty());
+
+        sink.spool(entry("0000000000002_invocation-2"));
+        sink.spool(entry("0000000000001_invocation-1"));
+        sink.spool(entry("0000000000003_invocation-3"));
+
+        assertEquals(List.of("0000000000001_invocation-1", "0000000000002_invocation-2"), sink.list(2));
+        DeadLetterEntry entry = sink.read("0000000000002_invocation-2");
+        assertEquals("blob_upload", entry.getStage());
+        assertEquals(List.of("{\"id\":\"1\"}"), entry.getEvents());
+        assertEquals(Map.of("prop1_without_dash", true, "prop1-with-dash", "1"), entry.getProperties().get(0));
+
+        sink.delete("0000000000001_invocation-1");
+        assertEquals(List.of("0000000000002_invocation-2", "0000000000003_invocation-3"), sink.list(10));
+    }
+
+    private static DeadLetterEntry entry(String id) {
+        return DeadLetterEntry.builder()
+                .id(id)
+                .invocationId(id.substring(id.indexOf('_') + 1))
+                .retryIndex(7)
+                .stage("blob_upload")
+                .error("upload failed")
+                .failedAt("2024-01-05T08:00:00Z")
+                .events(List.of("{\"id\":\"1\"}"))
+                .properties(List.of(Map.of("prop1_without_dash", true, "prop1-with-dash", "1")))
+                .build();
+    }
+}
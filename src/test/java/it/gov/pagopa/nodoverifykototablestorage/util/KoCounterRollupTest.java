@@ -0,0 +1,113 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+import com.azure.core.http.HttpResponse;
+import com.azure.core.http.rest.PagedFlux;
+import com.azure.core.http.rest.PagedIterable;
+import com.azure.core.http.rest.PagedResponseBase;
+import com.azure.data.tables.TableClient;
+import com.azure.data.tables.models.ListEntitiesOptions;
+import com.azure.data.tables.models.TableEntity;
+import com.azure.data.tables.models.TableServiceException;
+import com.azure.data.tables.models.TableTransactionAction;
+import com.azure.data.tables.models.TableTransactionActionType;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+class KoCounterRollupTest {
+
+    private static final AdaptiveConcurrencyLimiter LIMITER = new AdaptiveConcurrencyLimiter("test", 4, 0, Duration.ofMillis(1), Duration.ofMillis(5));
+
+    @Test
+    void add_countsByHourDimensionAndFaultCode() {
+        KoCounterRollup rollup = new KoCounterRollup(KoCounterRollup.parseDimensions("idPA, idPsp"), 3);
+        KoCounterRollup.Counts counts = rollup.newCounts();
+
+        counts.add(event(LocalDateTime.of(2024, 1, 5, 8, 10), "77777777777", "88888888888", "PPT_SYNTAX_ERROR"));
+        counts.add(event(LocalDateTime.of(2024, 1, 5, 8, 50), "77777777777", "99999999999", "PPT_SYNTAX_ERROR"));
+        counts.add(event(LocalDateTime.of(2024, 1, 6, 0, 5), "77777777777", "a/b", "PPT_SYNTAX_ERROR"));
+
+        assertEquals(3, counts.getEvents());
+        assertEquals(Map.of(
+                "2024-1-5", Map.of(
+                        "08|idPA|77777777777|PPT_SYNTAX_ERROR", 2L,
+                        "08|idPsp|88888888888|PPT_SYNTAX_ERROR", 1L,
+                        "08|idPsp|99999999999|PPT_SYNTAX_ERROR", 1L),
+                "2024-1-6", Map.of(
+                        "00|idPA|77777777777|PPT_SYNTAX_ERROR", 1L)), counts.snapshot());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void merge_retriedOnConcurrentUpdate() throws Exception {
+        KoCounterRollup rollup = new KoCounterRollup(List.of("idPA", "idPsp"), 3);
+        KoCounterRollup.Counts counts = rollup.newCounts();
+        counts.add(event(LocalDateTime.of(2024, 1, 5, 8, 10), "77777777777", "88888888888", "PPT_SYNTAX_ERROR"));
+        TableClient tableClient = mock(TableClient.class);
+        when(tableClient.listEntities(any(ListEntitiesOptions.class), isNull(), isNull()))
+                .thenAnswer(invocation -> rows(row("08|idPA|77777777777|PPT_SYNTAX_ERROR", 5L)));
+        HttpResponse response = mock(HttpResponse.class);
+        when(response.getStatusCode()).thenReturn(412);
+        when(tableClient.submitTransaction(any()))
+                .thenThrow(new TableServiceException("condition not met", response))
+                .thenReturn(null);
+
+        rollup.merge(tableClient, counts, LIMITER);
+
+        ArgumentCaptor<List<TableTransactionAction>> actionsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(tableClient, times(2)).submitTransaction(actionsCaptor.capture());
+        List<TableTransactionAction> actions = actionsCaptor.getValue();
+        actions.sort(Comparator.comparing(action -> action.getEntity().getRowKey()));
+        assertEquals(TableTransactionActionType.UPDATE_MERGE, actions.get(0).getActionType());
+        assertTrue(actions.get(0).getIfUnchanged());
+        assertEquals(6L, actions.get(0).getEntity().getProperty(KoCounterRollup.COUNT_FIELD));
+        assertEquals(TableTransactionActionType.CREATE, actions.get(1).getActionType());
+        assertEquals(1L, actions.get(1).getEntity().getProperty(KoCounterRollup.COUNT_FIELD));
+        assertEquals("88888888888", actions.get(1).getEntity().getProperty(KoCounterRollup.VALUE_FIELD));
+        assertEquals(8, actions.get(1).getEntity().getProperty(KoCounterRollup.HOUR_FIELD));
+    }
+
+    @Test
+    void merge_otherErrorsNotRetried() {
+        KoCounterRollup rollup = new KoCounterRollup(List.of("idPA"), 3);
+        KoCounterRollup.Counts counts = rollup.newCounts();
+        counts.add(event(LocalDateTime.of(2024, 1, 5, 8, 10), "77777777777", "88888888888", "PPT_SYNTAX_ERROR"));
+        TableClient tableClient = mock(TableClient.class);
+        when(tableClient.listEntities(any(ListEntitiesOptions.class), isNull(), isNull())).thenAnswer(invocation -> rows());
+        HttpResponse response = mock(HttpResponse.class);
+        when(response.getStatusCode()).thenReturn(400);
+        when(tableClient.submitTransaction(any())).thenThrow(new TableServiceException("bad request", response));
+
+        assertThrows(TableServiceException.class, () -> rollup.merge(tableClient, counts, LIMITER));
+        verify(tableClient, times(1)).submitTransaction(any());
+    }
+
+    private static Map<String, Object> event(LocalDateTime dateTime, String idPA, String idPsp, String faultCode) {
+        return Map.of(
+                Constants.DATE_TIME_EVENT_FIELD, dateTime,
+                Constants.ID_PA_TABLESTORAGE_EVENT_FIELD, idPA,
+                Constants.ID_PSP_TABLESTORAGE_EVENT_FIELD, idPsp,
+                Constants.FAULT_CODE_TABLESTORAGE_EVENT_FIELD, faultCode);
+    }
+
+    private static TableEntity row(String rowKey, long count) {
+        return new TableEntity("2024-1-5", rowKey)
+                .addProperty("odata.etag", "W/\"datetime'2024-01-05T08%3A00%3A00Z'\"")
+                .addProperty(KoCounterRollup.COUNT_FIELD, count);
+    }
+
+    private static PagedIterable<TableEntity> rows(TableEntity... rows) {
+        return new PagedIterable<>(new PagedFlux<>(() -> Mono.just(new PagedResponseBase<Void, TableEntity>(null, 200, null, List.of(rows), null, null))));
+    }
+}
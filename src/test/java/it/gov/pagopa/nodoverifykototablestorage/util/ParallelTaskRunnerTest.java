@@ -0,0 +1,38 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+class ParallelTaskRunnerTest {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void runAll_boundedParallelism(boolean virtualThreads) {
+        ParallelTaskRunner runner = new ParallelTaskRunner("test", 3, virtualThreads);
+        assertEquals(virtualThreads && ParallelTaskRunner.isVirtualThreadSupported(), runner.isVirtual());
+
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<Integer> items = IntStream.range(0, 30).boxed().collect(Collectors.toList());
+
+        List<ParallelTaskRunner.TaskFailure<Integer>> failures = runner.runAll(items, item -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(2);
+            inFlight.decrementAndGet();
+            if (item % 10 == 5) {
+                throw new IllegalStateException("failed " + item);
+            }
+        });
+
+        assertTrue(maxInFlight.get() <= 3);
+        assertEquals(List.of(5, 15, 25), failures.stream().map(ParallelTaskRunner.TaskFailure::getItem).collect(Collectors.toList()));
+        assertEquals("failed 15", failures.get(1).getCause().getMessage());
+    }
+}
@@ -0,0 +1,81 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class PartitionKeyStrategyTest {
+
+    private static final LocalDateTime DATE_TIME = LocalDateTime.of(2024, 1, 5, 8, 34, 39);
+
+    private static final Map<String, Object> EVENT = Map.of(
+            Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD, "1704443679-uuid-001",
+            Constants.ID_PA_TABLESTORAGE_EVENT_FIELD, "77777777777",
+            Constants.ID_PSP_TABLESTORAGE_EVENT_FIELD, "88888888888");
+
+    @Test
+    void getPartitionKey_day() {
+        assertEquals("2024-1-5", PartitionKeyStrategy.DAY.getPartitionKey(DATE_TIME, EVENT, 16));
+        assertEquals(List.of("2024-1-5"), PartitionKeyStrategy.DAY.getPartitionKeys(DATE_TIME.toLocalDate(), 16));
+    }
+
+    @Test
+    void getPartitionKey_dayHour() {
+        assertEquals("2024-1-5_08", PartitionKeyStrategy.DAY_HOUR.getPartitionKey(DATE_TIME, EVENT, 16));
+        assertEquals(24, PartitionKeyStrategy.DAY_HOUR.getPartitionKeys(DATE_TIME.toLocalDate(), 16).size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(PartitionKeyStrategy.class)
+    void getPartitionKey_enumeratedByDay(PartitionKeyStrategy strategy) {
+        String partitionKey = strategy.getPartitionKey(DATE_TIME, EVENT, 16);
+
+        assertTrue(partitionKey.startsWith(PartitionKeyStrategy.getDay(DATE_TIME.toLocalDate())));
+        assertTrue(strategy.getPartitionKeys(DATE_TIME.toLocalDate(), 16).contains(partitionKey));
+        assertEquals(partitionKey, strategy.getPartitionKey(DATE_TIME, EVENT, 16));
+    }
+
+    @Test
+    void getPartitionKey_bucketsInRange() {
+        for (int index = 0; index < 1000; index++) {
+            Map<String, Object> event = Map.of(Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD, "1704443679-uuid-" + index);
+            String partitionKey = PartitionKeyStrategy.DAY_ROW_BUCKET.getPartitionKey(DATE_TIME, event, 16);
+            int bucket = Integer.parseInt(partitionKey.substring(partitionKey.indexOf(PartitionKeyStrategy.SEPARATOR) + 1));
+            assertTrue(bucket >= 0 && bucket < 16);
+        }
+        assertEquals(16, PartitionKeyStrategy.DAY_ROW_BUCKET.getPartitionKeys(DATE_TIME.toLocalDate(), 16).size());
+        assertEquals(PartitionKeyStrategy.MAX_BUCKETS, PartitionKeyStrategy.DAY_PSP_BUCKET.getPartitionKeys(DATE_TIME.toLocalDate(), 1000).size());
+    }
+
+    @Test
+    void getPartitionKeys_timeRangePruned() {
+        LocalDateTime from = LocalDateTime.of(2024, 1, 5, 22, 30);
+        LocalDateTime to = LocalDateTime.of(2024, 1, 6, 2, 0);
+
+        assertEquals(List.of("2024-1-5", "2024-1-6"), PartitionKeyStrategy.DAY.getPartitionKeys(from, to, Map.of(), 16));
+        assertEquals(List.of("2024-1-5_22", "2024-1-5_23", "2024-1-6_00", "2024-1-6_01"), PartitionKeyStrategy.DAY_HOUR.getPartitionKeys(from, to, Map.of(), 16));
+        assertEquals(List.of(PartitionKeyStrategy.DAY_CREDITOR_BUCKET.getPartitionKey(from, EVENT, 16), PartitionKeyStrategy.DAY_CREDITOR_BUCKET.getPartitionKey(to, EVENT, 16)),
+                PartitionKeyStrategy.DAY_CREDITOR_BUCKET.getPartitionKeys(from, to, EVENT, 16));
+        assertEquals(32, PartitionKeyStrategy.DAY_PSP_BUCKET.getPartitionKeys(from, to, Map.of(), 16).size());
+        assertEquals(32, PartitionKeyStrategy.DAY_ROW_BUCKET.getPartitionKeys(from, to, EVENT, 16).size());
+        assertTrue(PartitionKeyStrategy.DAY.getPartitionKeys(to, from, Map.of(), 16).isEmpty());
+    }
+
+    @Test
+    void getDayRangeFilter_excludesOtherDays() {
+        String filter = PartitionKeyStrategy.getDayRangeFilter(LocalDate.of(2024, 1, 1));
+
+        assertEquals("(PartitionKey eq '2024-1-1' or (PartitionKey ge '2024-1-1_' and PartitionKey lt '2024-1-1`'))", filter);
+        // partitions of the 1st of January with a suffix fall in the range, the ones of the 10th-19th do not
+        assertTrue("2024-1-1_05".compareTo("2024-1-1_") >= 0 && "2024-1-1_05".compareTo("2024-1-1`") < 0);
+        assertFalse("2024-1-15".compareTo("2024-1-1_") >= 0 && "2024-1-15".compareTo("2024-1-1`") < 0);
+        assertFalse("2024-1-15_05".compareTo("2024-1-1_") >= 0 && "2024-1-15_05".compareTo("2024-1-1`") < 0);
+    }
+}
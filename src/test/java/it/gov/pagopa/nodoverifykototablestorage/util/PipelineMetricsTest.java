@@ -0,0 +1,68 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.azure.core.exception.HttpResponseException;
+import com.azure.core.http.HttpResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+class PipelineMetricsTest {
+
+    @Test
+    void getReport_stagesAndDistributions() {
+        SimpleMeterRegistry exportRegistry = new SimpleMeterRegistry();
+        PipelineMetrics metrics = new PipelineMetrics(exportRegistry);
+
+        for (int index = 1; index <= 100; index++) {
+            metrics.recordSuccess(PipelineStage.BLOB_UPLOAD, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(index));
+            metrics.recordBlobBytes(index * 10L);
+        }
+        metrics.recordBatchSize(10);
+        metrics.recordTransactionSize(4);
+        metrics.recordEvents("persisted", 10);
+        metrics.recordEvents("skipped", 0);
+        metrics.registerConcurrencyLimit(new AdaptiveConcurrencyLimiter("blob_upload", 10, 0, Duration.ofMillis(1), Duration.ofMillis(1)));
+
+        PipelineMetricsReport report = metrics.getReport();
+
+        MetricStatistics blobUpload = report.getStages().get("blob_upload");
+        assertEquals(100, blobUpload.getCount());
+        assertTrue(blobUpload.getMax() >= 100);
+        assertTrue(blobUpload.getP50() >= 40 && blobUpload.getP50() <= 60, "p50 was " + blobUpload.getP50());
+        assertTrue(blobUpload.getP99() >= 90, "p99 was " + blobUpload.getP99());
+        assertTrue(blobUpload.getFailures().isEmpty());
+        assertEquals(0, report.getStages().get("event_parse").getCount());
+        assertEquals(100, report.getDistributions().get(PipelineMetrics.BLOB_BYTES).getCount());
+        assertEquals(50500, report.getDistributions().get(PipelineMetrics.BLOB_BYTES).getTotal());
+        assertEquals(10, report.getDistributions().get(PipelineMetrics.BATCH_SIZE).getMax());
+        assertEquals(10L, report.getEvents().get("persisted"));
+        assertFalse(report.getEvents().containsKey("skipped"));
+        assertEquals(10, report.getConcurrencyLimits().get("blob_upload"));
+
+        // the metrics are published also on the export registry
+        assertEquals(100, exportRegistry.find(PipelineMetrics.STAGE_DURATION).tag("stage", "blob_upload").timer().count());
+    }
+
+    @Test
+    void record_failuresByError() {
+        PipelineMetrics metrics = new PipelineMetrics(null);
+        HttpResponse response = Mockito.mock(HttpResponse.class);
+        Mockito.when(response.getStatusCode()).thenReturn(503);
+
+        metrics.recordFailure(PipelineStage.TABLE_TRANSACTION, new IllegalStateException(new HttpResponseException("server busy", response)));
+        metrics.record(PipelineStage.TABLE_TRANSACTION, Mono.error(new HttpResponseException("server busy", response))).onErrorResume(e -> Mono.empty()).block();
+        metrics.record(PipelineStage.TABLE_TRANSACTION, Mono.error(new IllegalArgumentException("invalid"))).onErrorResume(e -> Mono.empty()).block();
+        metrics.record(PipelineStage.TABLE_TRANSACTION, Mono.just(1)).block();
+
+        MetricStatistics transaction = metrics.getReport().getStages().get("table_transaction");
+        assertEquals(1, transaction.getCount());
+        assertEquals(2L, transaction.getFailures().get("http_503"));
+        assertEquals(1L, transaction.getFailures().get("IllegalArgumentException"));
+    }
+}
@@ -0,0 +1,30 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class PropertyNameNormalizerTest {
+
+    @Test
+    void normalize_cachedNames() {
+        PropertyNameNormalizer normalizer = new PropertyNameNormalizer(16);
+
+        String normalized = normalizer.normalize("x-opt-enqueued-time");
+
+        assertEquals("xOptEnqueuedTime", normalized);
+        assertSame(normalized, normalizer.normalize(new String("x-opt-enqueued-time")));
+        assertEquals("prop1_without_dash", normalizer.normalize("prop1_without_dash"));
+        assertEquals("prop-1", normalizer.normalize("prop-1"));
+    }
+
+    @Test
+    void normalize_beyondCapacity() {
+        PropertyNameNormalizer normalizer = new PropertyNameNormalizer(1);
+
+        assertEquals("propA", normalizer.normalize("prop-a"));
+        assertEquals("propB", normalizer.normalize("prop-b"));
+        assertEquals("propB", normalizer.normalize("prop-b"));
+        assertNotSame(normalizer.normalize("prop-b"), normalizer.normalize("prop-b"));
+    }
+}
@@ -0,0 +1,64 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.azure.data.tables.models.TableEntity;
+import com.azure.data.tables.models.TableTransactionAction;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+class SecondaryIndexTest {
+
+    @Test
+    void parse_fieldsAndTableNames() {
+        List<SecondaryIndex> indexes = SecondaryIndex.parse(" idPA, noticeNumber,idPA ", "events");
+
+        assertEquals(2, indexes.size());
+        assertEquals("idPA", indexes.get(0).getField());
+        assertEquals("eventsByIdPA", indexes.get(0).getTableName());
+        assertEquals("eventsByNoticeNumber", indexes.get(1).getTableName());
+        assertTrue(SecondaryIndex.parse(null, "events").isEmpty());
+        assertTrue(SecondaryIndex.parse(" ", "events").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> SecondaryIndex.parse("idStation", "events"));
+    }
+
+    @Test
+    void partition_byFieldValue() {
+        SecondaryIndex index = new SecondaryIndex("idPA", "eventsByIdPA");
+
+        Map<String, List<TableTransactionAction>> entries = index.partition(List.of(
+                event("2024-1-5", "row-1", "77777777777"),
+                event("2024-1-5", "row-2", "77777777777"),
+                event("2024-1-6", "row-3", "88888888888"),
+                event("2024-1-6", "row-4", Constants.NA),
+                event("2024-1-6", "row-5", "a/b")));
+
+        assertEquals(2, entries.size());
+        assertEquals(2, entries.get("77777777777").size());
+        TableEntity entity = entries.get("88888888888").get(0).getEntity();
+        assertEquals("row-3", entity.getRowKey());
+        assertEquals("2024-1-6", entity.getProperty(SecondaryIndex.EVENT_PARTITION_KEY_FIELD));
+        assertEquals(1704499200L, entity.getProperty(Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD));
+    }
+
+    @Test
+    void isValidKey_forbiddenCharacters() {
+        assertTrue(SecondaryIndex.isValidKey("302000100000009424"));
+        assertFalse(SecondaryIndex.isValidKey(""));
+        assertFalse(SecondaryIndex.isValidKey("a#b"));
+        assertFalse(SecondaryIndex.isValidKey("a?b"));
+        assertFalse(SecondaryIndex.isValidKey("a\\b"));
+        assertFalse(SecondaryIndex.isValidKey("a\tb"));
+        assertFalse(SecondaryIndex.isValidKey("x".repeat(513)));
+    }
+
+    private static Map<String, Object> event(String partitionKey, String rowKey, String idPA) {
+        return Map.of(
+                Constants.PARTITION_KEY_TABLESTORAGE_EVENT_FIELD, partitionKey,
+                Constants.ROW_KEY_TABLESTORAGE_EVENT_FIELD, rowKey,
+                Constants.TIMESTAMP_TABLESTORAGE_EVENT_FIELD, 1704499200L,
+                Constants.ID_PA_TABLESTORAGE_EVENT_FIELD, idPA);
+    }
+}
@@ -0,0 +1,140 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.azure.core.http.HttpClient;
+import com.azure.data.tables.TableAsyncClient;
+import com.azure.data.tables.TableClient;
+import com.azure.data.tables.TableServiceAsyncClient;
+import com.azure.data.tables.TableServiceClient;
+import com.azure.data.tables.TableServiceClientBuilder;
+import com.azure.storage.blob.BlobContainerAsyncClient;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.BlobServiceAsyncClient;
+import com.azure.storage.blob.BlobServiceClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedConstruction;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+
+class StorageClientProviderTest {
+
+    @Test
+    void getClients_initializedOnce() {
+        HttpClient httpClient = StorageClientProvider.buildHttpClient(8, Duration.ofSeconds(30), Duration.ofSeconds(5), Duration.ofSeconds(30));
+        TableServiceClient tableServiceClient = mock(TableServiceClient.class);
+        BlobServiceClient blobServiceClient = mock(BlobServiceClient.class);
+        BlobContainerClient blobContainerClient = mock(BlobContainerClient.class);
+        when(blobServiceClient.createBlobContainerIfNotExists("container")).thenReturn(blobContainerClient);
+
+        try (
+                MockedConstruction<BlobServiceClientBuilder> blobServiceClientBuilder = Mockito.mockConstruction(BlobServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(httpClient)).thenReturn(mock);
+                    when(mock.buildClient()).thenReturn(blobServiceClient);
+                });
+                MockedConstruction<TableServiceClientBuilder> tableServiceClientBuilder = Mockito.mockConstruction(TableServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(httpClient)).thenReturn(mock);
+                    when(mock.buildClient()).thenReturn(tableServiceClient);
+                });
+        ) {
+            StorageClientProvider provider = new StorageClientProvider("table-conn", "blob-conn", "table", "container", httpClient);
+
+            assertSame(tableServiceClient, provider.getTableServiceClient());
+            assertSame(tableServiceClient, provider.getTableServiceClient());
+            assertSame(blobContainerClient, provider.getBlobContainerClient());
+            assertSame(blobContainerClient, provider.getBlobContainerClient());
+
+            assertEquals(1, tableServiceClientBuilder.constructed().size());
+            assertEquals(1, blobServiceClientBuilder.constructed().size());
+            verify(tableServiceClientBuilder.constructed().get(0)).httpClient(httpClient);
+            verify(tableServiceClient, times(1)).createTableIfNotExists("table");
+            verify(blobServiceClient, times(1)).createBlobContainerIfNotExists("container");
+        }
+    }
+
+    @Test
+    void getClients_initializedAgainAfterFailure() {
+        TableServiceClient tableServiceClient = mock(TableServiceClient.class);
+        when(tableServiceClient.createTableIfNotExists("table"))
+                .thenThrow(new IllegalStateException("service unavailable"))
+                .thenReturn(null);
+
+        try (
+                MockedConstruction<TableServiceClientBuilder> tableServiceClientBuilder = Mockito.mockConstruction(TableServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildClient()).thenReturn(tableServiceClient);
+                });
+        ) {
+            StorageClientProvider provider = new StorageClientProvider("table-conn", "blob-conn", "table", "container", null);
+
+            assertThrows(IllegalStateException.class, provider::getTableServiceClient);
+            assertSame(tableServiceClient, provider.getTableServiceClient());
+            assertEquals(2, tableServiceClientBuilder.constructed().size());
+        }
+    }
+
+    @Test
+    void getTableClient_additionalTableCreatedOnce() {
+        TableServiceClient tableServiceClient = mock(TableServiceClient.class);
+        TableClient indexTableClient = mock(TableClient.class);
+        when(tableServiceClient.getTableClient("tableByIdPA")).thenReturn(indexTableClient);
+        when(tableServiceClient.createTableIfNotExists("tableByIdPA"))
+                .thenThrow(new IllegalStateException("service unavailable"))
+                .thenReturn(null);
+
+        try (
+                MockedConstruction<TableServiceClientBuilder> tableServiceClientBuilder = Mockito.mockConstruction(TableServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildClient()).thenReturn(tableServiceClient);
+                });
+        ) {
+            StorageClientProvider provider = new StorageClientProvider("table-conn", "blob-conn", "table", "container", null);
+
+            assertThrows(IllegalStateException.class, () -> provider.getTableClient("tableByIdPA"));
+            assertSame(indexTableClient, provider.getTableClient("tableByIdPA"));
+            assertSame(indexTableClient, provider.getTableClient("tableByIdPA"));
+
+            assertEquals(1, tableServiceClientBuilder.constructed().size());
+            verify(tableServiceClient, times(1)).createTableIfNotExists("table");
+            verify(tableServiceClient, times(2)).createTableIfNotExists("tableByIdPA");
+        }
+    }
+
+    @Test
+    void getReadOnlyClients_storageNotCreated() {
+        TableServiceAsyncClient tableServiceAsyncClient = mock(TableServiceAsyncClient.class);
+        TableAsyncClient tableAsyncClient = mock(TableAsyncClient.class);
+        when(tableServiceAsyncClient.getTableClient("table")).thenReturn(tableAsyncClient);
+        BlobServiceAsyncClient blobServiceAsyncClient = mock(BlobServiceAsyncClient.class);
+        BlobContainerAsyncClient blobContainerAsyncClient = mock(BlobContainerAsyncClient.class);
+        when(blobServiceAsyncClient.getBlobContainerAsyncClient("container")).thenReturn(blobContainerAsyncClient);
+
+        try (
+                MockedConstruction<BlobServiceClientBuilder> blobServiceClientBuilder = Mockito.mockConstruction(BlobServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildAsyncClient()).thenReturn(blobServiceAsyncClient);
+                });
+                MockedConstruction<TableServiceClientBuilder> tableServiceClientBuilder = Mockito.mockConstruction(TableServiceClientBuilder.class, (mock, context) -> {
+                    when(mock.connectionString(any())).thenReturn(mock);
+                    when(mock.httpClient(any())).thenReturn(mock);
+                    when(mock.buildAsyncClient()).thenReturn(tableServiceAsyncClient);
+                });
+        ) {
+            StorageClientProvider provider = new StorageClientProvider("table-conn", "blob-conn", "table", "container", null);
+
+            assertSame(tableAsyncClient, provider.getReadOnlyTableAsyncClient());
+            assertSame(blobContainerAsyncClient, provider.getReadOnlyBlobContainerAsyncClient());
+
+            verify(tableServiceAsyncClient, never()).createTableIfNotExists(any());
+            verify(blobContainerAsyncClient, never()).createIfNotExists();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+class TablePropertyProjectionTest {
+
+    @Test
+    void isAllowed_allowList() {
+        TablePropertyProjection projection = new TablePropertyProjection(TablePropertyProjection.parseAllowList(" xOptEnqueuedTime, prop1WithDash ,"), 100);
+
+        assertTrue(projection.isAllowed("xOptEnqueuedTime"));
+        assertTrue(projection.isAllowed("prop1WithDash"));
+        assertFalse(projection.isAllowed("xOptSequenceNumber"));
+        assertTrue(new TablePropertyProjection(TablePropertyProjection.parseAllowList(null), 100).isAllowed("xOptSequenceNumber"));
+        assertTrue(new TablePropertyProjection(TablePropertyProjection.parseAllowList(" "), 100).isAllowed("xOptSequenceNumber"));
+    }
+
+    @Test
+    void project_coercedValues() {
+        TablePropertyProjection projection = new TablePropertyProjection(Set.of(), 100);
+        Instant instant = Instant.parse("2024-01-05T08:00:00Z");
+
+        assertEquals("1", projection.project("1"));
+        assertEquals(true, projection.project(true));
+        assertEquals(42L, projection.project(42L));
+        assertEquals(7, projection.project((short) 7));
+        assertEquals(1.5d, projection.project(1.5f));
+        assertEquals("12.50", projection.project(new BigDecimal("12.50")));
+        assertEquals(OffsetDateTime.of(2024, 1, 5, 8, 0, 0, 0, ZoneOffset.UTC), projection.project(instant));
+        assertEquals("{\"a\":[1,2]}", projection.project(Map.of("a", List.of(1, 2))));
+        assertNull(projection.project(null));
+    }
+
+    @Test
+    void project_truncatedStrings() {
+        TablePropertyProjection projection = new TablePropertyProjection(Set.of(), 4);
+
+        assertEquals("abcd", projection.project("abcd"));
+        assertEquals("abcd", projection.project("abcdefgh"));
+        assertEquals("[1,2", projection.project(List.of(1, 2, 3)));
+    }
+}
@@ -0,0 +1,81 @@
+package it.gov.pagopa.nodoverifykototablestorage.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.azure.data.tables.models.TableEntity;
+import com.azure.data.tables.models.TableTransactionAction;
+import com.azure.data.tables.models.TableTransactionActionType;
+import org.junit.jupiter.api.Test;
+
+class TableTransactionPlannerTest {
+
+    @Test
+    void plan_emptyPartition() {
+        TableTransactionPlanner planner = new TableTransactionPlanner(100, TableTransactionPlanner.MAX_TRANSACTION_PAYLOAD_BYTES);
+
+        assertTrue(planner.plan(List.of()).isEmpty());
+    }
+
+    @Test
+    void plan_splitByActionCount() {
+        TableTransactionPlanner planner = new TableTransactionPlanner(100, TableTransactionPlanner.MAX_TRANSACTION_PAYLOAD_BYTES);
+        List<TableTransactionAction> actions = generateActions(250, 10);
+
+        List<List<TableTransactionAction>> transactions = planner.plan(actions);
+
+        assertEquals(List.of(100, 100, 50), transactions.stream().map(List::size).collect(Collectors.toList()));
+        assertEquals(actions, transactions.stream().flatMap(List::stream).collect(Collectors.toList()));
+    }
+
+    @Test
+    void plan_actionCountLimitedToServiceMaximum() {
+        TableTransactionPlanner planner = new TableTransactionPlanner(1000, TableTransactionPlanner.MAX_TRANSACTION_PAYLOAD_BYTES);
+
+        List<List<TableTransactionAction>> transactions = planner.plan(generateActions(150, 10));
+
+        assertEquals(List.of(100, 50), transactions.stream().map(List::size).collect(Collectors.toList()));
+    }
+
+    @Test
+    void plan_splitByPayloadSize() {
+        TableTransactionPlanner planner = new TableTransactionPlanner(100, TableTransactionPlanner.MAX_TRANSACTION_PAYLOAD_BYTES);
+        // each action is estimated at more than 500KB, so at most 8 actions fit in a 4MB transaction
+        List<TableTransactionAction> actions = generateActions(20, 256 * 1024);
+
+        List<List<TableTransactionAction>> transactions = planner.plan(actions);
+
+        assertEquals(List.of(7, 7, 6), transactions.stream().map(List::size).collect(Collectors.toList()));
+        transactions.forEach(transaction -> assertTrue(transaction.stream().mapToLong(TableTransactionPlanner::estimateSize).sum() <= TableTransactionPlanner.MAX_TRANSACTION_PAYLOAD_BYTES));
+    }
+
+    @Test
+    void plan_oversizedActionInDedicatedTransaction() {
+        TableTransactionPlanner planner = new TableTransactionPlanner(100, 10_000);
+        List<TableTransactionAction> actions = new ArrayList<>(generateActions(2, 10));
+        actions.add(1, generateAction("big", 20_000));
+
+        List<List<TableTransactionAction>> transactions = planner.plan(actions);
+
+        assertEquals(List.of(1, 1, 1), transactions.stream().map(List::size).collect(Collectors.toList()));
+        assertEquals("big", transactions.get(1).get(0).getEntity().getRowKey());
+    }
+
+    private static List<TableTransactionAction> generateActions(int count, int valueLength) {
+        List<TableTransactionAction> actions = new ArrayList<>();
+        for (int index = 0; index < count; index++) {
+            actions.add(generateAction("row-" + index, valueLength));
+        }
+        return actions;
+    }
+
+    private static TableTransactionAction generateAction(String rowKey, int valueLength) {
+        TableEntity entity = new TableEntity("2023-12-12", rowKey);
+        entity.setProperties(Map.of("blobBodyRef", "x".repeat(valueLength), "timestamp", 1702406079L));
+        return new TableTransactionAction(TableTransactionActionType.UPSERT_REPLACE, entity);
+    }
+}